@@ -0,0 +1,144 @@
+package com.app.Utility;
+
+import com.app.dto.BookingSlotDto;
+import com.app.dto.MessOwnerDto;
+import com.app.dto.PaymentDto;
+import com.app.dto.UserDto;
+import com.app.model.BookingSlot;
+import com.app.model.MessOwner;
+import com.app.model.Payment;
+import com.app.model.User;
+
+import java.util.ArrayList;
+
+/*
+    Hand-written entity <-> DTO mapping.
+    Plain getter/setter copies, so there is no reflection or type-map construction per call
+    and the methods are safe to use from any thread.
+ */
+public final class DtoMapper {
+
+    private DtoMapper() {
+    }
+
+    /*
+        ############ User -> UserDto ############
+     */
+    public static UserDto toUserDto(User user) {
+        UserDto dto = new UserDto();
+        dto.setName(user.getName());
+        dto.setPhoneNumber(user.getPhoneNumber());
+        dto.setGender(user.getGender());
+        dto.setAddress(user.getAddress());
+        dto.setImageName(user.getImageName());
+        dto.setCurrentDate(user.getCurrentDate());
+        dto.setMessId(user.getMessId());
+        dto.setMessName(user.getMessName());
+        dto.setJoinDate(user.getJoinDate());
+        dto.setSubscriptionPlan(user.getSubscriptionPlan());
+        dto.setFoodType(user.getFoodType());
+
+        // Ensure contact is never null in the DTO
+        String contact = user.getContact();
+        dto.setContact(contact == null || contact.isEmpty() ? user.getEmail() : contact);
+
+        return dto;
+    }
+
+    /*
+        ############ MessOwner -> MessOwnerDto ############
+     */
+    public static MessOwnerDto toMessOwnerDto(MessOwner mess) {
+        MessOwnerDto dto = new MessOwnerDto();
+        dto.setId(mess.getId());
+        dto.setName(mess.getName());
+        dto.setContact(mess.getContact());
+        dto.setEmail(mess.getEmail());
+        dto.setMessName(mess.getMessName());
+        dto.setMessAddress(mess.getMessAddress());
+        dto.setMessType(mess.getMessType());
+        dto.setCapacity(mess.getCapacity());
+        dto.setPricePerMeal(mess.getPricePerMeal());
+        dto.setSubscriptionPlan(mess.getSubscriptionPlan());
+        dto.setCurrentDate(mess.getCurrentDate());
+        dto.setImageName(mess.getImageName());
+        dto.setMessImages(mess.getMessImages() == null ? null : new ArrayList<>(mess.getMessImages()));
+        if (mess.getJoinedUsers() != null) {
+            dto.setJoinedUsers(new ArrayList<>(mess.getJoinedUsers()));
+        }
+        dto.setLatitude(mess.getLatitude());
+        dto.setLongitude(mess.getLongitude());
+        dto.setAverageRating(mess.getAverageRating());
+        dto.setFeedbackCount(mess.getFeedbackCount());
+        return dto;
+    }
+
+    /*
+        ############ Payment -> PaymentDto ############
+     */
+    public static PaymentDto toPaymentDto(Payment payment) {
+        PaymentDto dto = new PaymentDto();
+        dto.setId(payment.getId());
+        dto.setUserEmail(payment.getUserEmail());
+        dto.setOwnerEmail(payment.getOwnerEmail());
+        dto.setMessId(payment.getMessId());
+        dto.setTotalDues(payment.getTotalDues());
+        dto.setAmountPaid(payment.getAmountPaid());
+        dto.setRemainingDues(payment.getRemainingDues());
+        dto.setPaymentDate(payment.getPaymentDate());
+        dto.setPaymentMethod(payment.getPaymentMethod());
+        dto.setTransactionId(payment.getTransactionId());
+        dto.setStatus(payment.getStatus());
+        dto.setNotes(payment.getNotes());
+        dto.setPeriodStart(payment.getPeriodStart());
+        dto.setPeriodEnd(payment.getPeriodEnd());
+        return dto;
+    }
+
+    /*
+        ############ BookingSlot <-> BookingSlotDto ############
+     */
+    public static BookingSlotDto toBookingSlotDto(BookingSlot slot) {
+        BookingSlotDto dto = new BookingSlotDto();
+        dto.setId(slot.getId());
+        dto.setUserEmail(slot.getUserEmail());
+        dto.setUserName(slot.getUserName());
+        dto.setMessId(slot.getMessId());
+        dto.setMessEmail(slot.getMessEmail());
+        dto.setMessName(slot.getMessName());
+        dto.setDate(slot.getDate());
+        dto.setTimeSlot(slot.getTimeSlot());
+        dto.setStatus(slot.getStatus());
+        dto.setPaid(slot.isPaid());
+        dto.setPaymentId(slot.getPaymentId());
+        dto.setAmount(slot.getAmount());
+        dto.setCreatedAt(slot.getCreatedAt());
+        dto.setUpdatedAt(slot.getUpdatedAt());
+        dto.setApprovedAt(slot.getApprovedAt());
+        dto.setConfirmedAt(slot.getConfirmedAt());
+        dto.setCancelledAt(slot.getCancelledAt());
+        return dto;
+    }
+
+    public static BookingSlot toBookingSlot(BookingSlotDto dto) {
+        BookingSlot slot = new BookingSlot();
+        slot.setId(dto.getId());
+        slot.setUserEmail(dto.getUserEmail());
+        slot.setUserName(dto.getUserName());
+        slot.setMessId(dto.getMessId());
+        slot.setMessEmail(dto.getMessEmail());
+        slot.setMessName(dto.getMessName());
+        slot.setDate(dto.getDate());
+        slot.setTimeSlot(dto.getTimeSlot());
+        slot.setStatus(dto.getStatus());
+        slot.setPaid(dto.isPaid());
+        slot.setPaymentId(dto.getPaymentId());
+        slot.setAmount(dto.getAmount());
+        slot.setCreatedAt(dto.getCreatedAt());
+        slot.setUpdatedAt(dto.getUpdatedAt());
+        slot.setApprovedAt(dto.getApprovedAt());
+        slot.setConfirmedAt(dto.getConfirmedAt());
+        slot.setCancelledAt(dto.getCancelledAt());
+        return slot;
+    }
+}
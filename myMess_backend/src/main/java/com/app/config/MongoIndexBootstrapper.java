@@ -0,0 +1,116 @@
+package com.app.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mapping.context.MappingContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+    Creates the indexes declared on the @Document models (auto-index-creation is off) and
+    reports derived repository queries that no index can serve.
+
+    Runs on its own thread after startup, so requests are served while the indexes build.
+ */
+@Component
+public class MongoIndexBootstrapper {
+
+    Logger logger = LoggerFactory.getLogger(MongoIndexBootstrapper.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread worker = new Thread(this::bootstrap, "mongo-index-bootstrap");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void bootstrap() {
+        MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext =
+                mongoTemplate.getConverter().getMappingContext();
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        Repositories repositories = new Repositories(applicationContext);
+
+        List<String> unindexed = new ArrayList<>();
+        for (Class<?> domainType : repositories) {
+            MongoPersistentEntity<?> entity = mappingContext.getRequiredPersistentEntity(domainType);
+            IndexOperations indexOps = mongoTemplate.indexOps(domainType);
+
+            long start = System.currentTimeMillis();
+            for (IndexDefinition definition : resolver.resolveIndexFor(domainType)) {
+                try {
+                    indexOps.ensureIndex(definition);
+                } catch (DataAccessException e) {
+                    // e.g. duplicates blocking a unique index, the affected queries show up in the report below
+                    logger.warn("Could not create index {} on {}: {}",
+                            definition.getIndexOptions().get("name"), entity.getCollection(), e.getMessage());
+                }
+            }
+            logger.info("Indexes of {} ensured in {} ms", entity.getCollection(), System.currentTimeMillis() - start);
+
+            Set<String> leadingKeys = new HashSet<>();
+            for (IndexInfo index : indexOps.getIndexInfo()) {
+                if (!index.getIndexFields().isEmpty()) {
+                    leadingKeys.add(index.getIndexFields().get(0).getKey());
+                }
+            }
+
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainType);
+            for (Method method : information.getQueryMethods()) {
+                if (method.isAnnotationPresent(Query.class)) {
+                    continue;
+                }
+                Set<String> fields = queriedFields(method, entity);
+                if (!fields.isEmpty() && fields.stream().noneMatch(leadingKeys::contains)) {
+                    unindexed.add(information.getRepositoryInterface().getSimpleName() + "." + method.getName());
+                }
+            }
+        }
+
+        if (unindexed.isEmpty()) {
+            logger.info("Every derived repository query is backed by an index");
+        } else {
+            logger.warn("Derived repository queries without a supporting index (collection scans): {}", unindexed);
+        }
+    }
+
+    /*
+        Document field names the derived query filters on
+     */
+    private Set<String> queriedFields(Method method, MongoPersistentEntity<?> entity) {
+        Set<String> fields = new HashSet<>();
+        for (Part part : new PartTree(method.getName(), entity.getType()).getParts()) {
+            MongoPersistentProperty property = entity.getPersistentProperty(part.getProperty().getSegment());
+            fields.add(property == null ? part.getProperty().getSegment() : property.getFieldName());
+        }
+        return fields;
+    }
+}
@@ -5,6 +5,7 @@ import com.app.model.MessOwner;
 import com.app.model.User;
 import com.app.repository.MessOwnerRepository;
 import com.app.repository.UserRepository;
+import com.app.service.AccountLookupService;
 import com.app.service.OTPService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,9 @@ public class AuthenticationController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private AccountLookupService accountLookupService;
+
     Logger logger= LoggerFactory.getLogger(AuthenticationController.class);
 
 
@@ -47,8 +51,14 @@ public class AuthenticationController {
     public ResponseEntity<String> sendOtp(@RequestParam String contact) {
         logger.info("The Email is: "+contact);
         logger.info("OTP on going");
-        Optional<User> existingUser = userRepository.findByEmail(contact);
-        String otp = otpService.generateOtp(contact);
+        Optional<User> existingUser = accountLookupService.findUserByEmail(contact);
+        String otp;
+        try {
+            otp = otpService.generateOtp(contact);
+        } catch (IllegalStateException e) {
+            // OTP store is full
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
 
         if (existingUser.isPresent()) {
             String s = otpService.sendOtp(contact, otp);
@@ -73,7 +83,7 @@ public class AuthenticationController {
     @PostMapping("/verifyOtp")
     public ResponseEntity<String> verifyOtp(@RequestParam String contact, @RequestParam String otp) {
         if (otpService.verifyOtp(contact, otp)) {
-            Optional<User> existingUser = userRepository.findByEmail(contact);
+            Optional<User> existingUser = accountLookupService.findUserByEmail(contact);
 
             if (existingUser.isPresent()) {
                 // User exists
@@ -99,8 +109,14 @@ public class AuthenticationController {
 
     @PostMapping("/sendOtpToMess")
     public ResponseEntity<String> sendOtpToMess(@RequestParam String contact) {
-        Optional<MessOwner> existingMess = messOwnerRepository.findByEmail(contact);
-        String otp = otpService.generateOtp(contact);
+        Optional<MessOwner> existingMess = accountLookupService.findMessOwnerByEmail(contact);
+        String otp;
+        try {
+            otp = otpService.generateOtp(contact);
+        } catch (IllegalStateException e) {
+            // OTP store is full
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+        }
 
         if (existingMess.isPresent()) {
             String s = otpService.sendOtp(contact, otp);
@@ -115,10 +131,10 @@ public class AuthenticationController {
     @PostMapping("/verifyMess")
     public ResponseEntity<String> verifyOtpOfMess(@RequestParam String contact, @RequestParam String otp) {
         if (otpService.verifyOtp(contact, otp)) {
-            Optional<MessOwner> existingUser = messOwnerRepository.findByEmail(contact);
+            Optional<MessOwner> existingUser = accountLookupService.findMessOwnerByEmail(contact);
 
             if (existingUser.isPresent()) {
-                String token = jwtUtil.generateToken(contact);
+                String token = jwtUtil.generateToken(contact, JwtUtil.ROLE_MESS_OWNER);
                 return ResponseEntity.ok("Login successful. Token: " + token);
             } else {
                 // Create new user
@@ -129,7 +145,7 @@ public class AuthenticationController {
                 messOwnerRepository.save(messOwner);
 
 
-                String token = jwtUtil.generateToken(contact);
+                String token = jwtUtil.generateToken(contact, JwtUtil.ROLE_MESS_OWNER);
                 return ResponseEntity.ok("Account created and login successful. Token: " + token);
             }
         } else {
@@ -1,32 +1,31 @@
 package com.app.controllers;
 
+import com.app.Utility.DtoMapper;
 import com.app.dto.*;
 import com.app.model.MessOwner;
 import com.app.repository.MessOwnerRepository;
+import com.app.service.ChunkedUploadService;
 import com.app.service.FileService;
+import com.app.service.ImageDirectoryIndex;
 import com.app.service.MessOwnerService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 @Controller
@@ -34,18 +33,31 @@ import java.util.stream.Stream;
 @RequestMapping("/mess")
 public class MessOwnerController {
 
+    // How long clients may reuse the profile -> image redirect before asking again
+    private static final CacheControl PROFILE_REDIRECT_CACHE = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
+
+    // Limits for the map lookups, wider searches are cut down to these
+    private static final double MAX_RADIUS_KM = 50.0;
+    private static final double MAX_BOUNDS_DEGREES = 1.0; // ~110 km of latitude
+
     @Value("${mess.profile.picture}")
     private String imagePath;
 
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
     @Autowired
     private MessOwnerService messOwnerService;
 
     @Autowired
     private MessOwnerRepository messOwnerRepository;
 
+    @Autowired
+    private ImageDirectoryIndex imageDirectoryIndex;
+
     @PostMapping("/registerOwner")
     public ResponseEntity<ApiResponse> messOwnerRegistration(@Valid @RequestBody MessOwnerRegistrationDto messOwnerRegistrationDto){
         try {
@@ -84,6 +96,14 @@ public class MessOwnerController {
         return new ResponseEntity<>(userDtoStream, HttpStatus.OK);
     }
 
+    /*
+        ################ Count Users in Mess ##############
+     */
+    @GetMapping("/getUsers/{messId}/count")
+    public ResponseEntity<Long> countUsers(@PathVariable String messId){
+        return new ResponseEntity<>(messOwnerService.countMessUsers(messId), HttpStatus.OK);
+    }
+
 
      /*
         ################ Upload Profile Picture ##############
@@ -96,11 +116,43 @@ public class MessOwnerController {
 
         String imageName=fileService.fileUpload(file,imagePath);
 
-        MessOwnerDto messOwnerByEmail = messOwnerService.getMessOwnerByEmail(email);
+        // Only imageName is written, capacity and the gallery stay as concurrent updates left them
+        messOwnerService.setProfileImage(email, imageName);
+
+        ImageUploadedResponse imageUploadedResponse = ImageUploadedResponse.builder()
+                .imageName(imageName)
+                .message("Profile Picture Successfully uploaded")
+                .success(true)
+                .build();
+
+
+        return new ResponseEntity<>(imageUploadedResponse,HttpStatus.OK);
+    }
+
+
+    /*
+        ################ Complete a Chunked Profile Picture Upload ##############
+     */
+    @PostMapping("/profile/{email}/chunked/{uploadId}")
+    public ResponseEntity<ImageUploadedResponse> completeProfilePictureUpload(
+            @PathVariable String email,
+            @PathVariable String uploadId) throws IOException {
+
+        // Fail before committing the file if the mess does not exist
+        messOwnerService.getMessOwnerByEmail(email);
 
-        messOwnerByEmail.setImageName(imageName);
+        String imageName;
+        try {
+            imageName = chunkedUploadService.complete(uploadId, imagePath);
+        } catch (IllegalStateException e) {
+            ImageUploadedResponse rejected = ImageUploadedResponse.builder()
+                    .message(e.getMessage())
+                    .success(false)
+                    .build();
+            return new ResponseEntity<>(rejected, HttpStatus.CONFLICT);
+        }
 
-        MessOwnerDto messOwnerDto = messOwnerService.updateMessOwner(email, messOwnerByEmail);
+        messOwnerService.setProfileImage(email, imageName);
 
         ImageUploadedResponse imageUploadedResponse = ImageUploadedResponse.builder()
                 .imageName(imageName)
@@ -108,7 +160,6 @@ public class MessOwnerController {
                 .success(true)
                 .build();
 
-
         return new ResponseEntity<>(imageUploadedResponse,HttpStatus.OK);
     }
 
@@ -117,13 +168,19 @@ public class MessOwnerController {
        ############### Serve the Profile Picture ################
     */
     @GetMapping("/profile/{email}")
-    public void serveProfilePicture(@PathVariable String email, HttpServletResponse response) throws IOException {
+    public ResponseEntity<Void> serveProfilePicture(@PathVariable String email) {
         MessOwnerDto messOwnerByEmail = messOwnerService.getMessOwnerByEmail(email);
 
-        InputStream inputStream = fileService.serveFile(imagePath, messOwnerByEmail.getImageName());
-        response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        if (messOwnerByEmail.getImageName() == null) {
+            return ResponseEntity.notFound().build();
+        }
 
-        StreamUtils.copy(inputStream, response.getOutputStream());
+        // Redirect to the immutable image URL, only the redirect itself expires
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/mess/image/{imageName}").buildAndExpand(messOwnerByEmail.getImageName()).toUri())
+                .cacheControl(PROFILE_REDIRECT_CACHE)
+                .build();
     }
 
 
@@ -133,32 +190,63 @@ public class MessOwnerController {
     @PostMapping("/images/{email}")
     public ResponseEntity<ImageUploadedResponse> uploadMessImages(
             @RequestParam("images") List<MultipartFile> files,
-            @PathVariable String email) throws IOException {
+            @PathVariable String email) {
 
-        MessOwnerDto messOwner = messOwnerService.getMessOwnerByEmail(email);
+        // Fail before writing any file if the mess does not exist
+        messOwnerService.getMessOwnerByEmail(email);
 
-        List<String> imagesNames=new ArrayList<>();
+        // Files are written in parallel, each one reports its own result
+        List<FileUploadResult> results = fileService.fileUploadAll(files, imagePath);
 
-        for (MultipartFile file : files){
-            String imageName = fileService.fileUpload(file, imagePath);
-            imagesNames.add(imageName);
+        List<String> imagesNames = results.stream()
+                .filter(FileUploadResult::isSuccess)
+                .map(FileUploadResult::getImageName)
+                .toList();
+
+        if (!imagesNames.isEmpty()) {
+            messOwnerService.addMessImages(email, imagesNames);
         }
 
-        List<String> existingMessImages = messOwner.getMessImages();
-        if(existingMessImages==null){
-            existingMessImages=new ArrayList<>();
+        ImageUploadedResponse build = ImageUploadedResponse.builder()
+                .imagesNames(imagesNames)
+                .results(results)
+                .message(imagesNames.size() + " of " + files.size() + " images uploaded successfully")
+                .success(!imagesNames.isEmpty())
+                .build();
+        return new ResponseEntity<>(build, imagesNames.isEmpty() ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+    }
+
+    /*
+        ############## Complete a Chunked Mess Image Upload ###############
+     */
+    @PostMapping("/images/{email}/chunked/{uploadId}")
+    public ResponseEntity<ImageUploadedResponse> completeMessImageUpload(
+            @PathVariable String email,
+            @PathVariable String uploadId) throws IOException {
+
+        // Fail before committing the file if the mess does not exist
+        messOwnerService.getMessOwnerByEmail(email);
+
+        String imageName;
+        try {
+            imageName = chunkedUploadService.complete(uploadId, imagePath);
+        } catch (IllegalStateException e) {
+            ImageUploadedResponse rejected = ImageUploadedResponse.builder()
+                    .message(e.getMessage())
+                    .success(false)
+                    .build();
+            return new ResponseEntity<>(rejected, HttpStatus.CONFLICT);
         }
 
-        existingMessImages.addAll(imagesNames);
-        messOwner.setMessImages(existingMessImages);
+        messOwnerService.addMessImages(email, List.of(imageName));
 
-        messOwnerService.updateMessOwner(email,messOwner);
         ImageUploadedResponse build = ImageUploadedResponse.builder()
-                .imagesNames(imagesNames)
-                .message(imagesNames + "are Uploaded Successfully")
+                .imagesNames(List.of(imageName))
+                .imageName(imageName)
+                .message("Image uploaded successfully")
                 .success(true)
                 .build();
-        return new ResponseEntity<>(build,HttpStatus.OK);
+        return new ResponseEntity<>(build, HttpStatus.OK);
     }
 
     /*
@@ -193,51 +281,42 @@ public class MessOwnerController {
      */
     @GetMapping("/actual-images")
     public ResponseEntity<List<String>> getActualImageFiles() {
-        try {
-            // Get the actual files from the mess images directory
-            File messImagesDir = new File(imagePath);
-            if (!messImagesDir.exists() || !messImagesDir.isDirectory()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                        .body(List.of("Directory not found: " + imagePath));
-            }
-            
-            // Get all jpg files
-            File[] imageFiles = messImagesDir.listFiles((dir, name) -> 
-                    name.toLowerCase().endsWith(".jpg") || 
-                    name.toLowerCase().endsWith(".jpeg") || 
-                    name.toLowerCase().endsWith(".png"));
-            
-            if (imageFiles == null || imageFiles.length == 0) {
-                return ResponseEntity.status(HttpStatus.NO_CONTENT)
-                        .body(List.of("No image files found in " + imagePath));
-            }
-            
-            // Convert to URLs
-            List<String> imageUrls = Arrays.stream(imageFiles)
-                    .map(file -> "http://localhost:8080/mess/image/" + file.getName())
-                    .collect(Collectors.toList());
-            
-            return ResponseEntity.ok(imageUrls);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(List.of("Error accessing image directory: " + e.getMessage()));
+        // Served from the in-memory directory index, the folder itself is not read per request
+        List<String> names = imageDirectoryIndex.all();
+        if (names.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NO_CONTENT)
+                    .body(List.of("No image files found in " + imagePath));
         }
+
+        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().path("/mess/image/").toUriString();
+        return ResponseEntity.ok(names.stream().map(name -> baseUrl + name).toList());
+    }
+
+    /*
+        #################### Get Image Files From Directory, a page at a time ################
+     */
+    @GetMapping("/actual-images/page")
+    public ResponseEntity<CursorPageResponse<String>> getActualImageFilesPage(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "pageSize", defaultValue = "50", required = false) int pageSize) {
+        CursorPageResponse<String> page = imageDirectoryIndex.list(cursor, pageSize);
+
+        String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().path("/mess/image/").toUriString();
+        page.setContent(page.getContent().stream().map(name -> baseUrl + name).toList());
+
+        return ResponseEntity.ok(page);
     }
 
     /*
         #################### Serve Individual Mess Image by Filename ################
      */
     @GetMapping("/image/{imageName}")
-    public void serveMessImage(@PathVariable String imageName, HttpServletResponse response) throws IOException {
+    public void serveMessImage(@PathVariable String imageName,
+                               @RequestParam(value = "size", required = false) String size,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
         try {
-            // Fetch the image file from the mess images directory
-            InputStream inputStream = fileService.serveFile(imagePath, imageName);
-            
-            // Set content type
-            response.setContentType(MediaType.IMAGE_JPEG_VALUE);
-            
-            // Copy the image stream to the response output stream
-            StreamUtils.copy(inputStream, response.getOutputStream());
+            // Send the image file (or its thumb / small / medium variant) from the mess images directory
+            fileService.serveFile(imagePath, imageName, size, request, response);
         } catch (FileNotFoundException e) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, "Image not found: " + imageName);
         } catch (Exception e) {
@@ -257,6 +336,37 @@ public class MessOwnerController {
     }
 
 
+    /*
+        ############### Get Mess Cards page by page ##############
+     */
+    @GetMapping("/cards")
+    public ResponseEntity<CursorPageResponse<MessCardDto>> getMessCards(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "pageSize", defaultValue = "20", required = false) int pageSize){
+        try {
+            CursorPageResponse<MessCardDto> cards = messOwnerService.getMessCards(cursor, pageSize);
+            return new ResponseEntity<>(cards, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+
+    /*
+        ############### Search Mess by name or address ##############
+     */
+    @GetMapping("/search")
+    public ResponseEntity<PageableResponse<MessCardDto>> searchMess(
+            @RequestParam(value = "query") String query,
+            @RequestParam(value = "pageNumber", defaultValue = "0", required = false) int pageNumber,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize){
+
+        PageableResponse<MessCardDto> result = messOwnerService.searchMess(query, pageNumber, pageSize);
+
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+
     /*
         ##########  Get mess by ID #########
      */
@@ -264,7 +374,7 @@ public class MessOwnerController {
     public ResponseEntity<MessOwnerDto> getById(@PathVariable String id){
         MessOwner byId = messOwnerRepository.findById(id).orElseThrow(()->new RuntimeException("Mess not found"));
 
-        MessOwnerDto map = new ModelMapper().map(byId, MessOwnerDto.class);
+        MessOwnerDto map = DtoMapper.toMessOwnerDto(byId);
 
         return new ResponseEntity<>(map,HttpStatus.OK);
     }
@@ -280,9 +390,7 @@ public class MessOwnerController {
 
         MessOwnerDto byContact = messOwnerService.getMessOwnerByEmail(email);
 
-        MessOwnerDto map = new ModelMapper().map(byContact, MessOwnerDto.class);
-
-        return new ResponseEntity<>(map,HttpStatus.OK);
+        return new ResponseEntity<>(byContact,HttpStatus.OK);
     }
 
     /*
@@ -294,49 +402,64 @@ public class MessOwnerController {
             @RequestParam(value = "longitude") Double userLongitude,
             @RequestParam(value = "radius", defaultValue = "5.0") Double radiusInKm) {
         
-        List<MessOwnerDto> allMesses = messOwnerService.getAllMess();
-        List<MessOwnerDto> nearbyMesses = new ArrayList<>();
-        
-        for (MessOwnerDto mess : allMesses) {
-            if (mess.getLatitude() != null && mess.getLongitude() != null) {
-                double distance = calculateDistance(
-                    userLatitude, userLongitude, 
-                    mess.getLatitude(), mess.getLongitude()
-                );
-                
-                // Add distance to the DTO for client-side sorting
-                mess.setDistance(distance);
-                
-                // If distance is within the radius, add it to the result
-                if (distance <= radiusInKm) {
-                    nearbyMesses.add(mess);
-                }
-            }
-        }
-        
-        // Sort by distance
-        nearbyMesses.sort((a, b) -> Double.compare(a.getDistance(), b.getDistance()));
-        
+        List<MessOwnerDto> nearbyMesses = messOwnerService.getNearbyMess(userLatitude, userLongitude, clampRadius(radiusInKm));
+
         return new ResponseEntity<>(nearbyMesses, HttpStatus.OK);
     }
-    
-    /**
-     * Calculate distance between two locations using Haversine formula
-     * @return distance in kilometers
+
+    /*
+        ################## Get the K nearest Messes matching filters #############
      */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Earth's radius in kilometers
-        
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        
-        return R * c;
+    @GetMapping("/getNearest")
+    public ResponseEntity<List<MessOwnerDto>> getNearestMesses(
+            @RequestParam(value = "latitude") Double userLatitude,
+            @RequestParam(value = "longitude") Double userLongitude,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "radius", defaultValue = "10.0") Double radiusInKm,
+            @RequestParam(value = "messType", required = false) String messType,
+            @RequestParam(value = "minPrice", required = false) Integer minPrice,
+            @RequestParam(value = "maxPrice", required = false) Integer maxPrice,
+            @RequestParam(value = "minRating", required = false) Double minRating,
+            @RequestParam(value = "onlyAvailable", defaultValue = "true") boolean onlyAvailable) {
+
+        NearbyMessFilter filter = NearbyMessFilter.builder()
+                .messType(messType)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .minRating(minRating)
+                .onlyAvailable(onlyAvailable)
+                .build();
+
+        List<MessOwnerDto> nearestMesses = messOwnerService.getNearestMess(userLatitude, userLongitude, limit, clampRadius(radiusInKm), filter);
+
+        return new ResponseEntity<>(nearestMesses, HttpStatus.OK);
+    }
+
+    /*
+        ################## Get Messes inside a map bounding box #############
+     */
+    @GetMapping("/getInBounds")
+    public ResponseEntity<List<MessOwnerDto>> getMessesInBounds(
+            @RequestParam(value = "minLatitude") Double minLatitude,
+            @RequestParam(value = "minLongitude") Double minLongitude,
+            @RequestParam(value = "maxLatitude") Double maxLatitude,
+            @RequestParam(value = "maxLongitude") Double maxLongitude) {
+
+        // Boxes larger than MAX_BOUNDS_DEGREES are shrunk around their center
+        double centerLatitude = (Math.max(-90, minLatitude) + Math.min(90, maxLatitude)) / 2;
+        double centerLongitude = (Math.max(-180, minLongitude) + Math.min(180, maxLongitude)) / 2;
+        double halfLatitude = Math.min(Math.abs(maxLatitude - minLatitude), MAX_BOUNDS_DEGREES) / 2;
+        double halfLongitude = Math.min(Math.abs(maxLongitude - minLongitude), MAX_BOUNDS_DEGREES) / 2;
+
+        List<MessOwnerDto> messes = messOwnerService.getMessInBounds(
+                centerLatitude - halfLatitude, centerLongitude - halfLongitude,
+                centerLatitude + halfLatitude, centerLongitude + halfLongitude);
+
+        return new ResponseEntity<>(messes, HttpStatus.OK);
+    }
+
+    private static double clampRadius(double radiusInKm) {
+        return Math.max(0, Math.min(radiusInKm, MAX_RADIUS_KM));
     }
 
 }
@@ -0,0 +1,75 @@
+package com.app.controllers;
+
+import com.app.dto.ApiResponse;
+import com.app.dto.ChunkedUploadRequest;
+import com.app.dto.ChunkedUploadStatus;
+import com.app.service.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/*
+    Chunked upload protocol, for images sent over poor connections:
+      POST /uploads                              {fileName, size} -> uploadId, chunkSize, missingChunks
+      PUT  /uploads/{uploadId}/chunks/{index}    raw chunk bytes, X-Chunk-Checksum: SHA-256 hex
+      GET  /uploads/{uploadId}                   what is still missing after a dropped connection
+    The finished upload is committed by the endpoint that uses it, e.g. POST /profile/{email}/chunked/{uploadId}
+ */
+@RestController
+@RequestMapping("/uploads")
+public class UploadController {
+
+    public static final String CHECKSUM_HEADER = "X-Chunk-Checksum";
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+
+    /*
+        ################ Start a Chunked Upload ##############
+     */
+    @PostMapping
+    public ResponseEntity<?> startUpload(@Valid @RequestBody ChunkedUploadRequest request) throws IOException {
+        try {
+            ChunkedUploadStatus status = chunkedUploadService.start(request.getFileName(), request.getSize());
+            return new ResponseEntity<>(status, HttpStatus.CREATED);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+
+    /*
+        ################ Upload one Chunk ##############
+     */
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestHeader(value = CHECKSUM_HEADER, required = false) String checksum,
+            HttpServletRequest request) throws IOException {
+        try {
+            // The body is streamed straight to disk, it is never buffered whole
+            ChunkedUploadStatus status = chunkedUploadService.writeChunk(uploadId, index, checksum, request.getInputStream());
+            return ResponseEntity.ok(status);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(new ApiResponse(false, e.getMessage()), HttpStatus.CONFLICT);
+        }
+    }
+
+
+    /*
+        ################ Resume: Status of an Upload ##############
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<ChunkedUploadStatus> getUploadStatus(@PathVariable String uploadId) {
+        return ResponseEntity.ok(chunkedUploadService.status(uploadId));
+    }
+}
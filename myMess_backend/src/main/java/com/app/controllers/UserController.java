@@ -1,29 +1,32 @@
 package com.app.controllers;
 
 import com.app.dto.*;
+import com.app.jwt.AuthenticatedAccount;
 import com.app.jwt.JwtUtil;
 import com.app.model.User;
 import com.app.repository.UserRepository;
+import com.app.service.AccountLookupService;
+import com.app.service.ChunkedUploadService;
 import com.app.service.FileService;
 import com.app.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StreamUtils;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 
 @RestController
@@ -39,16 +42,22 @@ public class UserController {
     @Autowired
     private FileService fileService;
 
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
     @Value("${user.profile.picture}")
     private String imagePath;
 
+    // How long clients may reuse the profile -> image redirect before asking again
+    private static final CacheControl PROFILE_REDIRECT_CACHE = CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic();
 
-    @Autowired
-    private JwtUtil jwtUtil;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private AccountLookupService accountLookupService;
+
     /*
         ############ User Registration ############
      */
@@ -148,25 +157,68 @@ public class UserController {
     }
 
     /*
-        ############### Serve the Profile Picture ################
+        ################ Complete a Chunked Profile Picture Upload ##############
      */
-    @GetMapping("/profile/{email}")
-    public void serveProfilePicture(@PathVariable String email, HttpServletResponse response) throws IOException {
+    @PostMapping("/profile/{email}/chunked/{uploadId}")
+    public ResponseEntity<ImageUploadedResponse> completeProfilePictureUpload(
+            @PathVariable String email,
+            @PathVariable String uploadId) throws IOException {
+
+        // Fail before committing the file if the user does not exist
+        UserDto userById = userService.getUserByEmail(email);
+
+        String imageName;
         try {
-            UserDto userByEmail = userService.getUserByEmail(email);
+            imageName = chunkedUploadService.complete(uploadId, imagePath);
+        } catch (IllegalStateException e) {
+            ImageUploadedResponse rejected = ImageUploadedResponse.builder()
+                    .message(e.getMessage())
+                    .success(false)
+                    .build();
+            return new ResponseEntity<>(rejected, HttpStatus.CONFLICT);
+        }
 
-            // Check if imageName is null and provide a default image
-            String imageName = userByEmail.getImageName() != null ? userByEmail.getImageName() : "default-profile.jpg";
+        userById.setImageName(imageName);
 
-            // Fetch the image file
-            InputStream inputStream = fileService.serveFile(imagePath, imageName);
+        userService.updateUserDetails(email, userById);
 
-            // Set content type based on the file's MIME type
-            String contentType = Files.probeContentType(Paths.get(imagePath, imageName));
-            response.setContentType(contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        ImageUploadedResponse imageUploadedResponse = ImageUploadedResponse.builder()
+                .imageName(imageName)
+                .message("Profile Picture Successfully uploaded")
+                .success(true)
+                .build();
+
+        return new ResponseEntity<>(imageUploadedResponse,HttpStatus.OK);
+    }
+
+    /*
+        ############### Serve the Profile Picture ################
+     */
+    @GetMapping("/profile/{email}")
+    public ResponseEntity<Void> serveProfilePicture(@PathVariable String email) {
+        UserDto userByEmail = userService.getUserByEmail(email);
 
-            // Copy the image stream to the response output stream
-            StreamUtils.copy(inputStream, response.getOutputStream());
+        // Check if imageName is null and provide a default image
+        String imageName = userByEmail.getImageName() != null ? userByEmail.getImageName() : "default-profile.jpg";
+
+        // Redirect to the immutable image URL, only the redirect itself expires
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(ServletUriComponentsBuilder.fromCurrentContextPath()
+                        .path("/image/{imageName}").buildAndExpand(imageName).toUri())
+                .cacheControl(PROFILE_REDIRECT_CACHE)
+                .build();
+    }
+
+    /*
+        ############### Serve a Profile Picture by File Name ################
+     */
+    @GetMapping("/image/{imageName}")
+    public void serveImage(@PathVariable String imageName,
+                           @RequestParam(value = "size", required = false) String size,
+                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try {
+            // Original or its thumb / small / medium variant, Range and conditional requests included
+            fileService.serveFile(imagePath, imageName, size, request, response);
         } catch (FileNotFoundException e) {
             response.sendError(HttpServletResponse.SC_NOT_FOUND, "Image not found");
         } catch (Exception e) {
@@ -194,31 +246,47 @@ public class UserController {
     }
 
 
-    @GetMapping("/token")
-    public ResponseEntity<?> getUserProfile(@RequestHeader("Authorization") String authHeader) {
+    /*
+        #################### Leave Mess ################
+     */
+    @PostMapping("/leaveMess/{userEmail}/{messEmail}")
+    public ResponseEntity<ApiResponse> leaveMess(
+            @PathVariable String userEmail,
+            @PathVariable String messEmail,
+            @AuthenticationPrincipal AuthenticatedAccount account
+    ) {
+        // Only the member themselves or the owner of the mess may end a membership
+        boolean isMember = account.email().equalsIgnoreCase(userEmail);
+        boolean isOwner = JwtUtil.ROLE_MESS_OWNER.equals(account.role()) && account.email().equalsIgnoreCase(messEmail);
+        if (!isMember && !isOwner) {
+            return new ResponseEntity<>(new ApiResponse(false, "Not allowed to remove this member"), HttpStatus.FORBIDDEN);
+        }
+
         try {
-            // Extract the token from the Authorization header
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header.");
-            }
-            String token = authHeader.substring(7); // Remove "Bearer " prefix
-
-            // Validate the token
-            String contact = jwtUtil.generateToken(token);
-            if (contact == null) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Invalid or expired token.");
-            }
-
-            // Fetch user details using the contact
-            Optional<User> user = userRepository.findByEmail(contact);
-            if (user.isPresent()) {
-                return ResponseEntity.ok(user.get()); // Return user details as JSON
-            } else {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found.");
-            }
+            ApiResponse apiResponse = userService.leaveMess(userEmail, messEmail);
+            return ResponseEntity.ok(apiResponse);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(new ApiResponse(false, e.getMessage()), HttpStatus.NOT_FOUND);
+        }
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+
+    /*
+        ############## Profile of the Caller ##############
+     */
+    @GetMapping("/token")
+    public ResponseEntity<?> getUserProfile(@AuthenticationPrincipal AuthenticatedAccount account) {
+        // The bearer token was verified by JwtAuthenticationFilter, the endpoint is not reachable without it
+        if (account == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid Authorization header.");
+        }
+
+        // Fetch user details using the contact
+        Optional<User> user = accountLookupService.findUserByEmail(account.email());
+        if (user.isPresent()) {
+            return ResponseEntity.ok(user.get()); // Return user details as JSON
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found.");
         }
     }
 }
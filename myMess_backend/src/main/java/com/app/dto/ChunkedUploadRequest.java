@@ -0,0 +1,21 @@
+package com.app.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+/*
+    Start of a chunked upload, the server answers with the upload ID and the chunk size to use
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkedUploadRequest {
+    @NotBlank(message = "File name is required")
+    private String fileName;
+
+    @Positive(message = "Size must be positive")
+    private long size;
+}
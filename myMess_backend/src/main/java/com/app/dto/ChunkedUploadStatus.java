@@ -0,0 +1,23 @@
+package com.app.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/*
+    Progress of a chunked upload, a client resuming after a dropped connection sends the missing chunks
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChunkedUploadStatus {
+    private String uploadId;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int totalChunks;
+    private List<Integer> missingChunks;
+    private boolean complete;
+}
@@ -0,0 +1,19 @@
+package com.app.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int pageSize;
+
+    //Pass back as the cursor to fetch the next page, null on the last page
+    private String nextCursor;
+    private boolean isLastPage;
+}
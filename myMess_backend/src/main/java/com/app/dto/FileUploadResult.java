@@ -0,0 +1,18 @@
+package com.app.dto;
+
+import lombok.*;
+
+/*
+    Outcome of one file in a multi-file upload
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FileUploadResult {
+    private String originalName;
+    private String imageName;
+    private boolean success;
+    private String message;
+}
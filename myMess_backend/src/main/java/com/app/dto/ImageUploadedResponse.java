@@ -14,5 +14,7 @@ public class ImageUploadedResponse {
     private String imageName;
     private String message;
     private boolean success;
+    //Per file outcome of a multi-file upload
+    private List<FileUploadResult> results;
 
 }
@@ -0,0 +1,35 @@
+package com.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    Only the fields needed to render a mess card in a list,
+    read from MongoDB with a field projection
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessCardDto {
+    private String id;
+    private String email;
+
+    private String messName;
+    private String messAddress;
+    private String messType;//Veg or Non-veg
+    private Integer pricePerMeal;
+
+    private Double averageRating;
+    private Integer feedbackCount;
+
+    //Cover image
+    private String imageName;
+
+    private Double latitude;
+    private Double longitude;
+}
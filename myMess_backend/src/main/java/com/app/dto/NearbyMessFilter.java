@@ -0,0 +1,25 @@
+package com.app.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    Optional filters for the top-K nearest mess search, null means "any"
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NearbyMessFilter {
+    private String messType;//Veg or Non-veg
+    private Integer minPrice;
+    private Integer maxPrice;
+    private Double minRating;
+
+    //Only messes with capacity > 0
+    private boolean onlyAvailable;
+}
@@ -0,0 +1,8 @@
+package com.app.jwt;
+
+/*
+    Principal of an authenticated request, put in the security context by JwtAuthenticationFilter.
+    messId is the joined mess for a user and the own mess for a mess owner, null if there is none
+ */
+public record AuthenticatedAccount(String email, String role, String messId) {
+}
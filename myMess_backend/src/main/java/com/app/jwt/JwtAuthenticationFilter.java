@@ -0,0 +1,160 @@
+package com.app.jwt;
+
+import com.app.model.MessOwner;
+import com.app.model.User;
+import com.app.service.AccountLookupService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authenticates requests that carry "Authorization: Bearer <jwt>".
+ * The token is verified once and the account (email, role, messId) becomes the principal.
+ * The result is kept for a short time under the SHA-256 of the token, so repeat requests
+ * with the same token skip both the signature check and the account lookup.
+ * Requests without a valid token continue unauthenticated, SecurityConfig decides what they may reach.
+ */
+@Component
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER = "Bearer ";
+
+    // Short, so a changed account (e.g. a joined mess) shows up quickly
+    @Value("${security.token-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${security.token-cache.max-size:10000}")
+    private long maxSize;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private AccountLookupService accountLookupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private record CachedAuthentication(UsernamePasswordAuthenticationToken authentication, long expiresAtMillis) {
+    }
+
+    private Cache<String, CachedAuthentication> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // Never cache a token past its own expiry
+                .expireAfter(new Expiry<String, CachedAuthentication>() {
+                    @Override
+                    public long expireAfterCreate(String digest, CachedAuthentication cached, long currentTime) {
+                        long millis = Math.min(ttlSeconds * 1000, cached.expiresAtMillis() - System.currentTimeMillis());
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, CachedAuthentication cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, CachedAuthentication cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verifiedTokens");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.startsWith(BEARER)
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            authenticate(header.substring(BEARER.length()).trim())
+                    .ifPresent(authentication -> {
+                        SecurityContext context = SecurityContextHolder.createEmptyContext();
+                        context.setAuthentication(authentication);
+                        SecurityContextHolder.setContext(context);
+                    });
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private Optional<UsernamePasswordAuthenticationToken> authenticate(String token) {
+        String digest = sha256(token);
+        CachedAuthentication cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            return Optional.of(cached.authentication());
+        }
+
+        Optional<JwtUtil.VerifiedToken> verified = jwtUtil.verify(token);
+        if (verified.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Optional<AuthenticatedAccount> account = resolveAccount(verified.get());
+        if (account.isEmpty()) {
+            // Valid signature but the account is gone
+            return Optional.empty();
+        }
+
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                account.get(), null, List.of(new SimpleGrantedAuthority("ROLE_" + account.get().role())));
+        verifiedTokens.put(digest, new CachedAuthentication(authentication, verified.get().expiration().getTime()));
+        return Optional.of(authentication);
+    }
+
+    /*
+        Tokens issued before the role claim was added are resolved as user first, then mess owner
+     */
+    private Optional<AuthenticatedAccount> resolveAccount(JwtUtil.VerifiedToken token) {
+        String email = token.email();
+        if (!JwtUtil.ROLE_MESS_OWNER.equals(token.role())) {
+            Optional<User> user = accountLookupService.findUserByEmail(email);
+            if (user.isPresent()) {
+                return Optional.of(new AuthenticatedAccount(email, JwtUtil.ROLE_USER, user.get().getMessId()));
+            }
+            if (token.role() != null) {
+                return Optional.empty();
+            }
+        }
+        Optional<MessOwner> messOwner = accountLookupService.findMessOwnerByEmail(email);
+        return messOwner.map(owner -> new AuthenticatedAccount(email, JwtUtil.ROLE_MESS_OWNER, owner.getId()));
+    }
+
+    private static String sha256(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
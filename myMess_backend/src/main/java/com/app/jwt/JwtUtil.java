@@ -6,50 +6,67 @@ import org.springframework.stereotype.Component;
 
 import java.security.Key;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 public class JwtUtil {
     private static final String SECRET_KEY = "my_mess_finder_secret_key_123456"; // Store securely
     private static final long EXPIRATION_TIME = 1000 * 60 * 60 * 24; // 24 hours
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    public static final String ROLE_USER = "USER";
+    public static final String ROLE_MESS_OWNER = "MESS_OWNER";
+    private static final String ROLE_CLAIM = "role";
+
+    // Built once, both are immutable and thread-safe
+    private static final Key SIGNING_KEY = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private static final JwtParser PARSER = Jwts.parserBuilder()
+            .setSigningKey(SIGNING_KEY)
+            .build();
+
+    /*
+        Subject, role and expiry of a token whose signature and expiry were checked.
+        role is null for tokens issued before it was added
+     */
+    public record VerifiedToken(String email, String role, Date expiration) {
     }
 
     public String generateToken(String email) {
+        return generateToken(email, ROLE_USER);
+    }
+
+    public String generateToken(String email, String role) {
         return Jwts.builder()
                 .setSubject(email)
+                .claim(ROLE_CLAIM, role)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(SIGNING_KEY, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean validateToken(String token, String email) {
+    /**
+     * Parse and verify the token once: signature, format and expiry.
+     * @return empty if the token is invalid or expired
+     */
+    public Optional<VerifiedToken> verify(String token) {
         try {
-            String tokenEmail = extractEmail(token);
-            return (email.equals(tokenEmail) && !isTokenExpired(token));
-        } catch (Exception e) {
-            return false;
+            Claims claims = PARSER.parseClaimsJws(token).getBody();
+            return Optional.of(new VerifiedToken(claims.getSubject(), claims.get(ROLE_CLAIM, String.class), claims.getExpiration()));
+        } catch (JwtException | IllegalArgumentException e) {
+            // ExpiredJwtException included, the parser checks exp itself
+            return Optional.empty();
         }
     }
 
-    public String extractEmail(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+    public boolean validateToken(String token, String email) {
+        return verify(token)
+                .map(verified -> email.equals(verified.email()))
+                .orElse(false);
     }
 
-    private boolean isTokenExpired(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
+    public String extractEmail(String token) {
+        return PARSER.parseClaimsJws(token)
                 .getBody()
-                .getExpiration()
-                .before(new Date());
+                .getSubject();
     }
 }
@@ -3,6 +3,8 @@ package com.app.model;
 import java.time.LocalDate;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -16,6 +18,10 @@ import lombok.Setter;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "attendance")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_date_user", def = "{'ownerEmail': 1, 'date': 1, 'userEmail': 1}"),
+        @CompoundIndex(name = "user_date", def = "{'userEmail': 1, 'date': 1}")
+})
 public class Attendance {
     @Id
     private String id;
@@ -2,6 +2,8 @@ package com.app.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDate;
 
@@ -11,6 +13,10 @@ import java.time.LocalDate;
 @AllArgsConstructor
 @Builder
 @Document(collection = "bookings")
+@CompoundIndexes({
+        @CompoundIndex(name = "mess_date", def = "{'messId': 1, 'bookingDate': 1}"),
+        @CompoundIndex(name = "user_date_slot", def = "{'userId': 1, 'bookingDate': 1, 'slotType': 1}")
+})
 public class Booking {
     @Id
     private String id;
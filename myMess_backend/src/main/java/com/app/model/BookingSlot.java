@@ -4,6 +4,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -18,6 +20,12 @@ import lombok.Setter;
 @AllArgsConstructor
 @Builder
 @Document(collection = "booking_slots")
+@CompoundIndexes({
+        @CompoundIndex(name = "mess_date_slot", def = "{'messEmail': 1, 'date': 1, 'timeSlot': 1}"),
+        @CompoundIndex(name = "mess_status", def = "{'messEmail': 1, 'status': 1}"),
+        @CompoundIndex(name = "user_status", def = "{'userEmail': 1, 'status': 1}"),
+        @CompoundIndex(name = "date_status", def = "{'date': 1, 'status': 1}")
+})
 public class BookingSlot {
     @Id
     private String id;
@@ -5,6 +5,8 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Getter
@@ -12,6 +14,10 @@ import org.springframework.data.mongodb.core.mapping.Document;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "feedback")
+@CompoundIndexes({
+        @CompoundIndex(name = "mess", def = "{'messEmail': 1}"),
+        @CompoundIndex(name = "user", def = "{'userEmail': 1}")
+})
 public class Feedback {
     @Id
     private String id;
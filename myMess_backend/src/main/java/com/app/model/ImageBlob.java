@@ -0,0 +1,40 @@
+package com.app.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    One stored image file in content-addressed mode, the file name is the SHA-256 of its bytes.
+    refCount is the number of user / mess fields currently pointing at the file.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "image_blobs")
+@CompoundIndexes({
+        @CompoundIndex(name = "refcount_updated", def = "{'refCount': 1, 'updatedAt': 1}")
+})
+public class ImageBlob {
+    //Folder + file name, e.g. Image/mess/<sha256>.jpg
+    @Id
+    private String id;
+    private String folder;
+    private String name;
+    private long size;
+    private int refCount;
+    private LocalDateTime createdAt;
+    //Last upload or reference change, the sweeper waits a grace period after it
+    private LocalDateTime updatedAt;
+}
@@ -4,6 +4,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -14,6 +16,13 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "leave_applications")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_email", def = "{'userEmail': 1}"),
+        @CompoundIndex(name = "user_mess", def = "{'userId': 1, 'messId': 1}"),
+        @CompoundIndex(name = "mess_status", def = "{'messId': 1, 'status': 1}"),
+        @CompoundIndex(name = "owner_status", def = "{'ownerEmail': 1, 'status': 1}"),
+        @CompoundIndex(name = "start_end", def = "{'startDate': 1, 'endDate': 1}")
+})
 public class LeaveApplication {
 
     @Id
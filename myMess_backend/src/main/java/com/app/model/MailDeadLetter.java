@@ -0,0 +1,32 @@
+package com.app.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    A mail that could not be delivered after all retries.
+    The body is not stored, it may hold an OTP.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "mail_dead_letters")
+public class MailDeadLetter {
+    @Id
+    private String id;
+    private String to;
+    private String subject;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime failedAt;
+}
@@ -0,0 +1,51 @@
+package com.app.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    One document per (mess, user) pair, replaces scanning the embedded MessOwner.joinedUsers list
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "mess_memberships")
+@CompoundIndexes({
+        @CompoundIndex(name = "mess_user_unique", def = "{'messId': 1, 'userEmail': 1}", unique = true),
+        @CompoundIndex(name = "mess_active_name", def = "{'messId': 1, 'active': 1, 'userName': 1}"),
+        @CompoundIndex(name = "user_active", def = "{'userEmail': 1, 'active': 1}")
+})
+public class MessMembership {
+    @Id
+    private String id;
+
+    private String messId;
+    private String messEmail;
+    private String userEmail;
+
+    //Copied from the user so members can be sorted by name without reading the users collection
+    private String userName;
+
+    //Plan chosen while joining
+    private LocalDate joinDate;
+    private String subscriptionPlan;
+    private String foodType;
+
+    private LocalDateTime joinedAt;
+    private LocalDateTime leftAt;
+
+    private boolean active;
+}
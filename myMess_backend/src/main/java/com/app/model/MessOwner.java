@@ -5,6 +5,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -21,6 +25,7 @@ public class MessOwner {
     @Id
     private String id;
     private String name;
+    @Indexed(unique = true)
     private String email;
     private String password;
     private String contact;
@@ -40,13 +45,16 @@ public class MessOwner {
     //Mess Images
     private List<String> messImages;
 
-    //List of User which join the particular Mess
+    //Emails of the current members, a copy of the active mess_memberships kept for API clients
     private List<String> joinedUsers = new ArrayList<>();
 
 
     private Double latitude;
     private Double longitude;
 
+    //GeoJSON copy of longitude/latitude, backed by a 2dsphere index for nearby search
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint location;
 
     private Double averageRating;
     private Integer feedbackCount;
@@ -3,9 +3,15 @@ package com.app.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "notifications")
+@CompoundIndexes({
+        @CompoundIndex(name = "recipient_read_created", def = "{'recipientEmail': 1, 'isRead': 1, 'createdAt': -1}"),
+        @CompoundIndex(name = "recipient_created", def = "{'recipientEmail': 1, 'createdAt': -1}")
+})
 public class Notification {
     
     @Id
@@ -3,6 +3,8 @@ package com.app.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -15,6 +17,12 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @Builder
 @Document(collection = "payments")
+@CompoundIndexes({
+        @CompoundIndex(name = "user_mess_date", def = "{'userEmail': 1, 'messId': 1, 'paymentDate': -1}"),
+        @CompoundIndex(name = "mess_date", def = "{'messId': 1, 'paymentDate': -1}"),
+        @CompoundIndex(name = "owner_date", def = "{'ownerEmail': 1, 'paymentDate': -1}"),
+        @CompoundIndex(name = "date", def = "{'paymentDate': -1}")
+})
 public class Payment {
     
     @Id
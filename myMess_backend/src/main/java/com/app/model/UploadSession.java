@@ -0,0 +1,45 @@
+package com.app.model;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/*
+    A chunked upload in progress. The chunks are written straight into one staging file,
+    receivedChunks holds the indexes whose checksum matched.
+ */
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    //The upload ID the client resumes with
+    @Id
+    private String id;
+    private String fileName;
+    private long size;
+    private int chunkSize;
+    private int totalChunks;
+    private Set<Integer> receivedChunks;
+    //Set while the file is committed, so it is committed once
+    private boolean completing;
+    //Chunk writes in progress, the file is only committed while this is 0
+    private int activeWrites;
+    //Until when the writes in progress may run, a count left behind by a killed server goes stale after it
+    private LocalDateTime writeLeaseUntil;
+    private LocalDateTime createdAt;
+    //Last chunk received, sessions idle too long are removed
+    @Indexed(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -16,6 +18,10 @@ import lombok.Setter;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "weekly_menu")
+// Every save inserts a new menu, the newest one per mess is read (findTopByMessEmailOrderByLastUpdatedDesc)
+@CompoundIndexes({
+        @CompoundIndex(name = "mess_last_updated", def = "{'messEmail': 1, 'lastUpdated': -1}")
+})
 public class WeeklyMenu {
     @Id
     private String id;
@@ -0,0 +1,25 @@
+package com.app.repository;
+
+import com.app.model.MessMembership;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MessMembershipRepository extends MongoRepository<MessMembership, String> {
+
+    // Membership of a user in a mess, active or not
+    Optional<MessMembership> findByMessIdAndUserEmail(String messId, String userEmail);
+
+    // Check if a user is currently a member of a mess
+    boolean existsByMessIdAndUserEmailAndActiveTrue(String messId, String userEmail);
+
+    // Count current members of a mess
+    long countByMessIdAndActiveTrue(String messId);
+
+    // Page through current members of a mess
+    Page<MessMembership> findByMessIdAndActiveTrue(String messId, Pageable pageable);
+}
@@ -1,5 +1,6 @@
 package com.app.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +20,7 @@ public interface UserRepository extends MongoRepository<User,String> {
 
 
     Page<User> findByEmailIn(List<String> email, Pageable pageable);
+
+
+    List<User> findByEmailIn(Collection<String> emails);
 }
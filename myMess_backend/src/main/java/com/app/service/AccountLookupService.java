@@ -0,0 +1,57 @@
+package com.app.service;
+
+import com.app.model.MessOwner;
+import com.app.model.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/*
+    Near cache in front of userRepository.findByEmail / messOwnerRepository.findByEmail.
+    Size and TTL come from spring.cache.caffeine.spec, hit/miss counts are published
+    as the cache.gets metric on /actuator/metrics.
+
+    Only use the returned entities for reading: code that modifies and saves a user or mess
+    must load it from the repository and call the matching evict method afterwards.
+    The password hash is never loaded, so a cached entry can not be used to check credentials.
+ */
+@Service
+public class AccountLookupService {
+
+    public static final String USERS_BY_EMAIL = "usersByEmail";
+    public static final String MESS_OWNERS_BY_EMAIL = "messOwnersByEmail";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Missing accounts are not cached so a fresh registration is seen immediately
+    @Cacheable(cacheNames = USERS_BY_EMAIL, unless = "#result == null")
+    public Optional<User> findUserByEmail(String email) {
+        return Optional.ofNullable(mongoTemplate.findOne(withoutPassword(email), User.class));
+    }
+
+    @Cacheable(cacheNames = MESS_OWNERS_BY_EMAIL, unless = "#result == null")
+    public Optional<MessOwner> findMessOwnerByEmail(String email) {
+        return Optional.ofNullable(mongoTemplate.findOne(withoutPassword(email), MessOwner.class));
+    }
+
+    private static Query withoutPassword(String email) {
+        Query query = new Query(Criteria.where("email").is(email));
+        query.fields().exclude("password");
+        return query;
+    }
+
+    @CacheEvict(cacheNames = USERS_BY_EMAIL)
+    public void evictUser(String email) {
+    }
+
+    @CacheEvict(cacheNames = MESS_OWNERS_BY_EMAIL)
+    public void evictMessOwner(String email) {
+    }
+}
@@ -25,7 +25,7 @@ public class AuthService {
     private PasswordEncoder passwordEncoder;
 
     public ApiResponse login(UserLoginDto loginDto) {
-        // Find user by email
+        // Credentials are always read from the database, the cached accounts carry no password hash
         User user = userRepository.findByEmail(loginDto.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
@@ -37,7 +37,7 @@ public class AuthService {
 
 
     public ApiResponse login(MessOwnerLoginDto loginDto) {
-        // Find user by email
+        // Credentials are always read from the database, the cached accounts carry no password hash
         MessOwner messOwner = messOwnerRepository.findByEmail(loginDto.getEmail())
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
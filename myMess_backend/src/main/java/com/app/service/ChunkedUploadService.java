@@ -0,0 +1,355 @@
+package com.app.service;
+
+import com.app.dto.ChunkedUploadStatus;
+import com.app.exceptions.ResourceNotFoundException;
+import com.app.model.UploadSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable uploads for slow or flaky connections.
+ * A client starts an upload, sends the chunks in any order (each with its SHA-256) and
+ * asks for the status after a dropped connection to send only what is missing.
+ * Chunks are written at their offset in one staging file, so completing needs no copy,
+ * the file is then committed with the same naming as a multipart upload.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Value("${file.upload.staging:Image/uploads/}")
+    private String stagingPath;
+
+    @Value("${file.upload.chunk-bytes:1048576}")
+    private int chunkBytes;
+
+    @Value("${file.upload.max-bytes:20971520}")
+    private long maxBytes;
+
+    // Sessions without a new chunk for this long are dropped with their staging file
+    @Value("${file.upload.expire-hours:24}")
+    private long expireHours;
+
+    // Longer than any chunk write takes. Writes still counted after this died with their server
+    @Value("${file.upload.write-lease-minutes:10}")
+    private long writeLeaseMinutes;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FileService fileService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(UploadSession.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(UploadSession.class)
+                .forEach(indexOps::ensureIndex);
+    }
+
+
+    /*
+        ############## Start ##############
+     */
+    public ChunkedUploadStatus start(String fileName, long size) throws IOException {
+        if (fileName.lastIndexOf('.') < 0) {
+            throw new IllegalArgumentException("File name needs an extension");
+        }
+        if (size <= 0 || size > maxBytes) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxBytes + " bytes");
+        }
+
+        Files.createDirectories(stagingFolder());
+        String uploadId = UUID.randomUUID().toString();
+        // Chunks never create the staging file, so a late chunk can not bring it back after the session is gone
+        Files.createFile(stagingFile(uploadId));
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(uploadId)
+                .fileName(fileName)
+                .size(size)
+                .chunkSize(chunkBytes)
+                .totalChunks((int) ((size + chunkBytes - 1) / chunkBytes))
+                .receivedChunks(new HashSet<>())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        mongoTemplate.insert(session);
+        return toStatus(session);
+    }
+
+
+    /*
+        ############## Receive a chunk ##############
+     */
+
+    /**
+     * Stream one chunk to its place in the staging file.
+     * A chunk with the wrong length or checksum is rejected and can simply be sent again.
+     * The write is registered on the session first, complete() waits for no write to be in progress,
+     * so a chunk never lands in a file that is being committed.
+     */
+    public ChunkedUploadStatus writeChunk(String uploadId, int index, String checksum, InputStream body) throws IOException {
+        if (checksum == null || checksum.isBlank()) {
+            throw new IllegalArgumentException("Chunk checksum is required");
+        }
+
+        UploadSession session = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(uploadId).and("completing").is(false)),
+                new Update().inc("activeWrites", 1).max("writeLeaseUntil", LocalDateTime.now().plusMinutes(writeLeaseMinutes)),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (session == null) {
+            find(uploadId);
+            throw new IllegalStateException("Upload is already being completed");
+        }
+
+        boolean accepted = false;
+        UploadSession updated;
+        try {
+            writeChunk(session, index, checksum, body);
+            accepted = true;
+        } finally {
+            updated = releaseWrite(uploadId, index, accepted);
+        }
+        if (updated == null) {
+            // Completed after this write's lease ran out, or expired
+            find(uploadId);
+            throw new IllegalStateException("Upload is already being completed");
+        }
+        return toStatus(updated);
+    }
+
+    /*
+        Only while the session is not completing, which can not start before this write is released
+        or its lease ran out
+     */
+    private UploadSession releaseWrite(String uploadId, int index, boolean accepted) {
+        Update release = new Update().inc("activeWrites", -1).set("updatedAt", LocalDateTime.now());
+        if (accepted) {
+            release.addToSet("receivedChunks", index);
+        }
+        UploadSession updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(uploadId).and("completing").is(false)),
+                release,
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+
+        if (updated == null && !mongoTemplate.exists(byId(uploadId), UploadSession.class)) {
+            // The session expired while the chunk was written, nothing else will remove the file now
+            try {
+                Files.deleteIfExists(stagingFile(uploadId));
+            } catch (IOException e) {
+                logger.warn("Could not delete staging file of upload {}: {}", uploadId, e.getMessage());
+            }
+        }
+        return updated;
+    }
+
+    private void writeChunk(UploadSession session, int index, String checksum, InputStream body) throws IOException {
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (session.getTotalChunks() - 1));
+        }
+
+        long offset = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getSize() - offset);
+
+        MessageDigest digest = sha256();
+        long written = 0;
+        // No CREATE: start() created the file, if it is gone so is the upload
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(stagingFile(session.getId()), StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            throw new ResourceNotFoundException("Upload not found");
+        }
+        try (channel) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            // Read at most one byte past the chunk, enough to tell it is too long
+            while ((read = body.read(buffer, 0, (int) Math.min(buffer.length, expected + 1 - written))) != -1) {
+                if (written + read > expected) {
+                    // Never spill into the next chunk
+                    throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes, offset + written + (read - bytes.remaining()));
+                }
+                written += read;
+            }
+        }
+
+        if (written != expected) {
+            throw new IllegalArgumentException("Chunk " + index + " must be " + expected + " bytes");
+        }
+        if (!HexFormat.of().formatHex(digest.digest()).equalsIgnoreCase(checksum.trim())) {
+            throw new IllegalArgumentException("Checksum of chunk " + index + " does not match");
+        }
+    }
+
+    public ChunkedUploadStatus status(String uploadId) {
+        return toStatus(find(uploadId));
+    }
+
+
+    /*
+        ############## Complete ##############
+     */
+
+    /**
+     * Commit the assembled file into the folder once every chunk arrived.
+     * @return the stored image name
+     */
+    public String complete(String uploadId, String path) throws IOException {
+        // Only one request commits the file, a retried completion is rejected,
+        // and never while a chunk is still being written into it. Writes whose lease ran out were
+        // lost with a killed or restarted server and never release, so they no longer count
+        UploadSession session = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(uploadId).and("completing").is(false)
+                        .orOperator(Criteria.where("activeWrites").not().gt(0),
+                                Criteria.where("writeLeaseUntil").lt(LocalDateTime.now()))),
+                new Update().set("completing", true).set("activeWrites", 0),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (session == null) {
+            throw new IllegalStateException(find(uploadId).isCompleting()
+                    ? "Upload is already being completed"
+                    : "A chunk is still being written, complete the upload again once it is done");
+        }
+
+        List<Integer> missing = missingChunks(session);
+        if (!missing.isEmpty()) {
+            mongoTemplate.updateFirst(byId(uploadId), new Update().set("completing", false), UploadSession.class);
+            throw new IllegalStateException("Missing chunks " + missing);
+        }
+
+        String imageName;
+        try {
+            imageName = fileService.fileUpload(stagingFile(uploadId), session.getFileName(), path);
+        } catch (IOException | RuntimeException e) {
+            mongoTemplate.updateFirst(byId(uploadId), new Update().set("completing", false), UploadSession.class);
+            throw e;
+        }
+
+        mongoTemplate.remove(byId(uploadId), UploadSession.class);
+        logger.info("Chunked upload {} of {} bytes stored as {}", uploadId, session.getSize(), imageName);
+        return imageName;
+    }
+
+
+    /*
+        ############## Drop abandoned uploads ##############
+     */
+    @Scheduled(fixedDelayString = "${file.upload.sweep-interval-ms:3600000}",
+            initialDelayString = "${file.upload.sweep-interval-ms:3600000}")
+    public void removeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(expireHours);
+        List<UploadSession> expired = mongoTemplate.findAllAndRemove(
+                new Query(Criteria.where("updatedAt").lt(cutoff)), UploadSession.class);
+
+        for (UploadSession session : expired) {
+            try {
+                Files.deleteIfExists(stagingFile(session.getId()));
+            } catch (IOException e) {
+                logger.warn("Could not delete staging file of upload {}: {}", session.getId(), e.getMessage());
+            }
+        }
+        if (!expired.isEmpty()) {
+            logger.info("Removed {} abandoned chunked uploads", expired.size());
+        }
+    }
+
+
+    /*
+        ############## Helpers ##############
+     */
+    private UploadSession find(String uploadId) {
+        UploadSession session = mongoTemplate.findById(uploadId, UploadSession.class);
+        if (session == null) {
+            throw new ResourceNotFoundException("Upload not found");
+        }
+        return session;
+    }
+
+    private ChunkedUploadStatus toStatus(UploadSession session) {
+        List<Integer> missing = missingChunks(session);
+        return ChunkedUploadStatus.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .size(session.getSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .missingChunks(missing)
+                .complete(missing.isEmpty())
+                .build();
+    }
+
+    private static List<Integer> missingChunks(UploadSession session) {
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < session.getTotalChunks(); i++) {
+            if (session.getReceivedChunks() == null || !session.getReceivedChunks().contains(i)) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    private Path stagingFolder() {
+        return Paths.get(stagingPath).toAbsolutePath().normalize();
+    }
+
+    // The upload ID is always a UUID the server generated, looked up before it is used here
+    private Path stagingFile(String uploadId) {
+        return stagingFolder().resolve(uploadId + ".part");
+    }
+
+    private static Query byId(String uploadId) {
+        return new Query(Criteria.where("_id").is(uploadId));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
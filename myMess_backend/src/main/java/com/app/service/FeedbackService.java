@@ -7,6 +7,15 @@ import com.app.model.MessOwner;
 import com.app.repository.FeedbackRepository;
 import com.app.repository.MessOwnerRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.GetMapping;
 
@@ -21,6 +30,21 @@ public class FeedbackService {
     @Autowired
     private FeedbackRepository feedbackRepository;
 
+    @Autowired
+    private MessLocationIndex messLocationIndex;
+
+    @Autowired
+    private MessSearchIndex messSearchIndex;
+
+    @Autowired
+    private MembershipService membershipService;
+
+    @Autowired
+    private AccountLookupService accountLookupService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
 
     /*
         ############### Add User Feedback ###############
@@ -31,10 +55,9 @@ public class FeedbackService {
                 () -> new ResourceNotFoundException("Mess Not exist")
         );
 
-        List<String> joinedUsers = messOwner.getJoinedUsers();
         String userEmail = feedback.getUserEmail();
 
-        if(!joinedUsers.contains(userEmail)){
+        if(!membershipService.isMember(messOwner.getId(), userEmail)){
             ApiResponse build = ApiResponse.builder()
                     .message("The user is not in this Mess")
                     .success(false)
@@ -46,15 +69,26 @@ public class FeedbackService {
 
         feedbackRepository.save(feedback);
 
-        double currentRating = messOwner.getAverageRating() != null ? messOwner.getAverageRating() : 0.0;
-        int currentFeedbackCount = messOwner.getFeedbackCount() != null ? messOwner.getFeedbackCount() : 0;
-
-        // Update the mess's average rating
-        double totalRating = currentRating * currentFeedbackCount;
-        totalRating += feedback.getRating();
-        messOwner.setFeedbackCount(currentFeedbackCount + 1);
-        messOwner.setAverageRating(totalRating / messOwner.getFeedbackCount());
-        messOwnerRepository.save(messOwner);
+        // Update the mess's average rating in one update computed by MongoDB from the stored values,
+        // so concurrent feedback is never lost and the rest of the mess (capacity, joinedUsers) is never rewritten
+        AggregationExpression count = ConditionalOperators.ifNull("feedbackCount").then(0);
+        AggregationExpression rating = ConditionalOperators.ifNull("averageRating").then(0.0);
+        AggregationUpdate addRating = AggregationUpdate.update().set(SetOperation.builder()
+                .set("averageRating").toValue(ArithmeticOperators.Divide
+                        .valueOf(ArithmeticOperators.Add.valueOf(ArithmeticOperators.Multiply.valueOf(rating).multiplyBy(count))
+                                .add(feedback.getRating()))
+                        .divideBy(ArithmeticOperators.Add.valueOf(count).add(1)))
+                .and()
+                .set("feedbackCount").toValue(ArithmeticOperators.Add.valueOf(count).add(1)));
+
+        MessOwner savedMess = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(messOwner.getId())),
+                addRating,
+                FindAndModifyOptions.options().returnNew(true),
+                MessOwner.class);
+        messLocationIndex.upsert(savedMess);
+        messSearchIndex.upsert(savedMess);
+        accountLookupService.evictMessOwner(savedMess.getEmail());
 
         ApiResponse build = ApiResponse.builder()
                 .message("The Feedback send Successfully")
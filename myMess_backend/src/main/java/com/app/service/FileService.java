@@ -2,11 +2,19 @@ package com.app.service;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
 
+import com.app.dto.FileUploadResult;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
 
 public interface FileService {
     String fileUpload(MultipartFile file, String path) throws IOException;
-    InputStream serveFile(String path, String imageName) throws FileNotFoundException;
+    String fileUpload(Path source, String originalFilename, String path) throws IOException;
+    List<FileUploadResult> fileUploadAll(List<MultipartFile> files, String path);
+    Path resolveFile(String path, String imageName) throws FileNotFoundException;
+    void serveFile(String path, String imageName, HttpServletRequest request, HttpServletResponse response) throws IOException;
+    void serveFile(String path, String imageName, String size, HttpServletRequest request, HttpServletResponse response) throws IOException;
 }
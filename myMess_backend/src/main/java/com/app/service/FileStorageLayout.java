@@ -0,0 +1,152 @@
+package com.app.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Where uploaded files live on disk.
+ * With file.storage.sharded=true a file named X is stored as {folder}/ab/cd/X, where ab/cd come
+ * from a hash of the name, so no directory grows past a few entries even with millions of files.
+ * Image names in the database and in URLs stay the same, only the disk location changes.
+ */
+@Service
+public class FileStorageLayout {
+
+    private final Logger logger = LoggerFactory.getLogger(FileStorageLayout.class);
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    @Value("${file.storage.sharded:false}")
+    private boolean sharded;
+
+    @Value("${user.profile.picture}")
+    private String userImagePath;
+
+    @Value("${mess.profile.picture}")
+    private String messImagePath;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+
+    /*
+        ############## Locate files ##############
+     */
+
+    /**
+     * Where a new file with this name is written, parent folders are created.
+     */
+    public Path newFile(String path, String name) throws IOException {
+        Path root = root(path);
+        Path file = sharded ? shardedPath(root, name) : root.resolve(name);
+        Files.createDirectories(file.getParent());
+        return file;
+    }
+
+    /**
+     * Where an existing file lives: its shard, or the flat folder while it is not migrated yet.
+     */
+    public Path locate(String path, String name) {
+        Path root = root(path);
+        if (!sharded) {
+            return root.resolve(name);
+        }
+
+        Path shard = shardedPath(root, name);
+        if (Files.exists(shard)) {
+            return shard;
+        }
+        Path flat = root.resolve(name);
+        if (Files.exists(flat)) {
+            return flat;
+        }
+        // Not found in either place, or moved by the migration between the two checks
+        return shard;
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    public static Path shardedPath(Path root, String name) {
+        CRC32 crc = new CRC32();
+        crc.update(name.getBytes(StandardCharsets.UTF_8));
+        long hash = crc.getValue();
+        return root.resolve(HEX.toHexDigits((byte) (hash >>> 8)))
+                .resolve(HEX.toHexDigits((byte) hash))
+                .resolve(name);
+    }
+
+    private static Path root(String path) {
+        return Paths.get(path).toAbsolutePath().normalize();
+    }
+
+
+    /*
+        ############## Move flat files into their shards ##############
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!sharded) {
+            return;
+        }
+        // Online: files are served from the flat folder until they are moved
+        Thread worker = new Thread(() -> {
+            migrateFolder(messImagePath);
+            migrateFolder(userImagePath);
+        }, "file-layout-migration");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    private void migrateFolder(String path) {
+        Path root = root(path);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        int moved = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root, Files::isRegularFile)) {
+            for (Path flat : files) {
+                String name = flat.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // Upload in progress
+                    continue;
+                }
+                Path target = shardedPath(root, name);
+                Files.createDirectories(target.getParent());
+                // Same name means same bytes, so replacing an existing copy is harmless
+                Files.move(flat, target, StandardCopyOption.ATOMIC_MOVE);
+                imageVariantService.moveVariants(flat, target);
+                imageByteCache.invalidate(flat);
+                moved++;
+            }
+        } catch (IOException e) {
+            logger.warn("Migration of {} into shards stopped after {} files, resumes on next start: {}", root, moved, e.getMessage());
+            return;
+        }
+
+        if (moved > 0) {
+            logger.info("Moved {} files of {} into shards in {} ms", moved, root, System.currentTimeMillis() - start);
+        }
+    }
+}
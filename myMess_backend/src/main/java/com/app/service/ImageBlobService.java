@@ -0,0 +1,295 @@
+package com.app.service;
+
+import com.app.model.ImageBlob;
+import com.app.model.MessOwner;
+import com.app.model.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Content-addressed image storage: every file is named after the SHA-256 of its bytes,
+ * so the same photo uploaded again is stored once and served from the same URL.
+ * Files are reference counted and removed by a sweeper once nothing points at them.
+ */
+@Service
+public class ImageBlobService {
+
+    private final Logger logger = LoggerFactory.getLogger(ImageBlobService.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+    @Autowired
+    private ImageDirectoryIndex imageDirectoryIndex;
+
+    @Autowired
+    private FileStorageLayout fileStorageLayout;
+
+    // Unreferenced blobs are kept this long, covers uploads not yet saved on a user or mess
+    @Value("${file.storage.gc-grace-minutes:60}")
+    private long graceMinutes;
+
+    // Upload and sweep of the same blob never run at the same time
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public ImageBlobService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexOps = mongoTemplate.indexOps(ImageBlob.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(ImageBlob.class)
+                .forEach(indexOps::ensureIndex);
+    }
+
+
+    /*
+        ############## Store ##############
+     */
+
+    /**
+     * Write the upload under its content hash, hashing while the bytes stream to disk.
+     * @return the stored file name, the same for identical content
+     */
+    public String store(MultipartFile file, String path, String extension) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return store(content, path, extension);
+        }
+    }
+
+    public String store(InputStream content, String path, String extension) throws IOException {
+        Path folder = Paths.get(path).toAbsolutePath().normalize();
+        Files.createDirectories(folder);
+
+        Path temp = Files.createTempFile(folder, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(content, digest)) {
+                size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String name = HexFormat.of().formatHex(digest.digest()) + extension.toLowerCase(Locale.ROOT);
+            String id = blobId(path, name);
+            LocalDateTime now = LocalDateTime.now();
+
+            synchronized (lockFor(id)) {
+                // Touch the record first so the sweeper leaves a reused blob alone
+                mongoTemplate.upsert(byId(id), new Update()
+                                .setOnInsert("folder", path)
+                                .setOnInsert("name", name)
+                                .setOnInsert("size", size)
+                                .setOnInsert("refCount", 0)
+                                .setOnInsert("createdAt", now)
+                                .set("updatedAt", now),
+                        ImageBlob.class);
+
+                // The existing copy may still sit in the flat folder while the layout migrates
+                if (Files.exists(fileStorageLayout.locate(path, name))) {
+                    logger.info("Upload is a duplicate of {}, nothing written", name);
+                } else {
+                    Files.move(temp, fileStorageLayout.newFile(path, name), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            return name;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /*
+        ############## Reference counting ##############
+     */
+    public void retain(String path, Collection<String> names) {
+        replaceReferences(path, List.of(), names);
+    }
+
+    /**
+     * @return true if the image is a tracked blob, false for files stored by UUID
+     */
+    public boolean release(String path, String name) {
+        if (name == null || name.isBlank()) {
+            return false;
+        }
+        return mongoTemplate.updateFirst(byId(blobId(path, name)),
+                new Update().inc("refCount", -1).set("updatedAt", LocalDateTime.now()),
+                ImageBlob.class).getMatchedCount() > 0;
+    }
+
+    /*
+        A field or list changed from before to after, count the names that appeared and disappeared
+        (lists may hold the same image twice, so this is a multiset difference)
+     */
+    public void replaceReferences(String path, Collection<String> before, Collection<String> after) {
+        Map<String, Integer> delta = new HashMap<>();
+        after.stream().filter(name -> name != null && !name.isBlank()).forEach(name -> delta.merge(name, 1, Integer::sum));
+        before.stream().filter(name -> name != null && !name.isBlank()).forEach(name -> delta.merge(name, -1, Integer::sum));
+
+        LocalDateTime now = LocalDateTime.now();
+        delta.forEach((name, change) -> {
+            if (change != 0) {
+                mongoTemplate.updateFirst(byId(blobId(path, name)),
+                        new Update().inc("refCount", change).set("updatedAt", now), ImageBlob.class);
+            }
+        });
+    }
+
+
+    /*
+        ############## Sweep unreferenced blobs ##############
+     */
+    @Scheduled(fixedDelayString = "${file.storage.gc-interval-ms:3600000}",
+            initialDelayString = "${file.storage.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(graceMinutes);
+        List<ImageBlob> candidates = mongoTemplate.find(
+                new Query(Criteria.where("refCount").lte(0).and("updatedAt").lt(cutoff)), ImageBlob.class);
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        // Never trust the counters alone: skip anything a user or mess still points at
+        Set<String> referenced = referencedNames(candidates.stream().map(ImageBlob::getName).collect(Collectors.toSet()));
+
+        int removed = 0;
+        for (ImageBlob blob : candidates) {
+            if (referenced.contains(blob.getName())) {
+                logger.warn("Image blob {} has refCount {} but is still referenced, keeping it", blob.getId(), blob.getRefCount());
+                mongoTemplate.updateFirst(byId(blob.getId()), new Update().set("updatedAt", LocalDateTime.now()), ImageBlob.class);
+                continue;
+            }
+
+            synchronized (lockFor(blob.getId())) {
+                // Conditional delete, loses against a concurrent upload or retain
+                ImageBlob gone = mongoTemplate.findAndRemove(new Query(Criteria.where("_id").is(blob.getId())
+                        .and("refCount").lte(0).and("updatedAt").lt(cutoff)), ImageBlob.class);
+                if (gone == null) {
+                    continue;
+                }
+                Path file = fileStorageLayout.locate(gone.getFolder(), gone.getName());
+                try {
+                    Files.deleteIfExists(file);
+                    imageByteCache.invalidate(file);
+                    imageDirectoryIndex.removed(Paths.get(gone.getFolder()), gone.getName());
+                    imageVariantService.deleteVariants(file);
+                    removed++;
+                } catch (IOException e) {
+                    logger.warn("Could not delete image blob {}: {}", file, e.getMessage());
+                }
+            }
+        }
+
+        if (removed > 0) {
+            logger.info("Removed {} unreferenced image blobs", removed);
+        }
+    }
+
+    /**
+     * The names out of the given ones that a user or mess still points at.
+     */
+    public Set<String> referencedNames(Set<String> names) {
+        Set<String> referenced = new HashSet<>();
+
+        Query users = new Query(Criteria.where("imageName").in(names));
+        users.fields().include("imageName");
+        mongoTemplate.find(users, User.class).forEach(user -> referenced.add(user.getImageName()));
+
+        Query messes = new Query(new Criteria().orOperator(
+                Criteria.where("imageName").in(names), Criteria.where("messImages").in(names)));
+        messes.fields().include("imageName", "messImages");
+        for (MessOwner mess : mongoTemplate.find(messes, MessOwner.class)) {
+            referenced.add(mess.getImageName());
+            if (mess.getMessImages() != null) {
+                referenced.addAll(mess.getMessImages());
+            }
+        }
+        return referenced;
+    }
+
+
+    /**
+     * The names out of the given ones that have a blob record in the folder, the blob sweeper owns those files.
+     */
+    public Set<String> trackedNames(String path, Collection<String> names) {
+        Map<String, String> nameById = new HashMap<>();
+        for (String name : names) {
+            nameById.put(blobId(path, name), name);
+        }
+
+        Query tracked = new Query(Criteria.where("_id").in(nameById.keySet()));
+        tracked.fields().include("_id");
+        return mongoTemplate.find(tracked, ImageBlob.class).stream()
+                .map(blob -> nameById.get(blob.getId()))
+                .collect(Collectors.toSet());
+    }
+
+
+    /*
+        ############## Helpers ##############
+     */
+    private static String blobId(String path, String name) {
+        return Paths.get(path, name).normalize().toString();
+    }
+
+    private static Query byId(String id) {
+        return new Query(Criteria.where("_id").is(id));
+    }
+
+    private Object lockFor(String id) {
+        return locks[Math.floorMod(id.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Bytes of small, frequently served images (originals and variants) kept in memory.
+ * Bounded by total bytes with Caffeine's W-TinyLFU policy, so a few hot cover images stay
+ * cached while one-off requests do not push them out.
+ * <p>
+ * file.cache.storage picks where the bytes live: heap, direct (off-heap buffers) or
+ * mapped (memory-mapped files), the last two keep large caches out of the GC's way.
+ */
+@Service
+public class ImageByteCache {
+
+    private final Logger logger = LoggerFactory.getLogger(ImageByteCache.class);
+
+    @Value("${file.cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    // Larger files are sent from disk with sendfile instead
+    @Value("${file.cache.max-entry-bytes:262144}")
+    private long maxEntryBytes;
+
+    @Value("${file.cache.storage:heap}")
+    private String storage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<Path, Entry> cache;
+
+    public record Entry(ByteBuffer content, long lastModified) {
+        public long length() {
+            return content.remaining();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Path file, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.length()))
+                .recordStats()
+                .build();
+
+        // cache.gets / cache.evictions etc. tagged cache=imageBytes, plus hit ratio and bytes held
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "imageBytes");
+        Gauge.builder("image.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+        Gauge.builder("image.cache.bytes", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        logger.info("Image byte cache: {} bytes max, entries up to {} bytes, {} storage", maxBytes, maxEntryBytes, storage);
+    }
+
+    /**
+     * The cached bytes of the file, loaded on a miss.
+     * @return null if the file is too large to cache
+     */
+    public Entry get(Path file) throws IOException {
+        Entry entry = cache.getIfPresent(file);
+        if (entry != null) {
+            return entry;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (attributes.size() > maxEntryBytes) {
+            return null;
+        }
+
+        entry = new Entry(load(file, attributes.size()), attributes.lastModifiedTime().toMillis());
+        cache.put(file, entry);
+        return entry;
+    }
+
+    /*
+        Files are immutable by name, so entries only go away when the file is deleted
+     */
+    public void invalidate(Path file) {
+        cache.invalidate(file);
+    }
+
+    private ByteBuffer load(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if ("mapped".equalsIgnoreCase(storage)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+            }
+
+            ByteBuffer buffer = "direct".equalsIgnoreCase(storage)
+                    ? ByteBuffer.allocateDirect((int) size)
+                    : ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // read until full or end of file
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.app.service;
+
+import com.app.dto.CursorPageResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Sorted in-memory list of the image files in the mess image folder and its shard folders.
+ * Seeded once at startup, then kept current by the upload / delete hooks and a WatchService
+ * for files that change outside the application, so listing a page never reads the directory.
+ * Only the top folder is watched, files dropped into shard folders by hand show up on the next start.
+ */
+@Service
+public class ImageDirectoryIndex {
+
+    private final Logger logger = LoggerFactory.getLogger(ImageDirectoryIndex.class);
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final String VARIANT_FOLDER = "variants";
+
+    @Value("${mess.profile.picture}")
+    private String imagePath;
+
+    private Path folder;
+
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>();
+
+    private volatile WatchService watchService;
+
+
+    /*
+        ############## Seed and watch ##############
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        folder = Paths.get(imagePath).toAbsolutePath().normalize();
+        Files.createDirectories(folder);
+
+        // Register before seeding so no file created in between is missed
+        watchService = folder.getFileSystem().newWatchService();
+        folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+        reseed();
+
+        Thread watcher = new Thread(this::watch, "image-directory-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void reseed() throws IOException {
+        Set<String> found = new HashSet<>();
+        // Top folder plus the two shard levels, variants/ folders are not images of their own
+        try (Stream<Path> files = Files.walk(folder, 3)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getParent().getFileName().toString().equals(VARIANT_FOLDER))
+                    .map(file -> file.getFileName().toString())
+                    .filter(ImageDirectoryIndex::isImage)
+                    .forEach(found::add);
+        }
+        names.retainAll(found);
+        names.addAll(found);
+        logger.info("Image directory index seeded with {} files from {}", names.size(), folder);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were dropped, read the folder once more
+                        reseed();
+                        continue;
+                    }
+                    String name = event.context().toString();
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        added(folder, name);
+                    } else if (!Files.exists(FileStorageLayout.shardedPath(folder, name))) {
+                        // A flat file moved into its shard by the layout migration is still there
+                        names.remove(name);
+                    }
+                }
+                if (!key.reset()) {
+                    logger.warn("Image folder {} is no longer watched", folder);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.warn("Image directory watch stopped: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+
+    /*
+        ############## Hooks from the upload and delete paths ##############
+     */
+    public void added(Path directory, String name) {
+        if (folder != null && folder.equals(directory.toAbsolutePath().normalize()) && isImage(name)) {
+            names.add(name);
+        }
+    }
+
+    public void removed(Path directory, String name) {
+        if (folder != null && folder.equals(directory.toAbsolutePath().normalize())) {
+            names.remove(name);
+        }
+    }
+
+
+    /*
+        ############## Listing ##############
+     */
+
+    /**
+     * Every image name in name order.
+     */
+    public List<String> all() {
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * A page of image names in name order, starting after the cursor (the last name of the previous page).
+     */
+    public CursorPageResponse<String> list(String cursor, int pageSize) {
+        pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+        NavigableSet<String> tail = cursor == null || cursor.isBlank() ? names : names.tailSet(cursor, false);
+
+        List<String> page = new ArrayList<>(pageSize);
+        Iterator<String> iterator = tail.iterator();
+        while (iterator.hasNext() && page.size() < pageSize) {
+            page.add(iterator.next());
+        }
+        boolean isLastPage = !iterator.hasNext();
+
+        return CursorPageResponse.<String>builder()
+                .content(page)
+                .pageSize(pageSize)
+                .nextCursor(isLastPage || page.isEmpty() ? null : page.get(page.size() - 1))
+                .isLastPage(isLastPage)
+                .build();
+    }
+
+    private static boolean isImage(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png");
+    }
+}
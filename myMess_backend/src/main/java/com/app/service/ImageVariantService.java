@@ -0,0 +1,339 @@
+package com.app.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resized JPEG copies of uploaded images, built in the background with the JDK's ImageIO.
+ * Variants are stored next to the original under variants/ as {name}_{size}.jpg.
+ * Until a variant exists callers serve the original.
+ * ImageIO ignores the EXIF orientation of phone photos and variants carry no metadata,
+ * so the pixels are turned upright before scaling.
+ */
+@Service
+public class ImageVariantService {
+
+    private final Logger logger = LoggerFactory.getLogger(ImageVariantService.class);
+
+    // size parameter -> longest side in pixels, largest first
+    private static final Map<String, Integer> SIZES = new LinkedHashMap<>();
+    static {
+        SIZES.put("medium", 1080);
+        SIZES.put("small", 480);
+        SIZES.put("thumb", 200);
+    }
+    private static final int LARGEST_SIZE = 1080;
+
+    private static final String VARIANT_FOLDER = "variants";
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    // Small pool so resizing never competes with request threads for long
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(256),
+            runnable -> {
+                Thread thread = new Thread(runnable, "image-variants-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Originals with variants being built, so one image is never queued twice
+    private final Set<Path> pending = ConcurrentHashMap.newKeySet();
+
+
+    /*
+        ############## Schedule variant generation ##############
+     */
+    public void generateAsync(Path original) {
+        if (!pending.add(original)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(original);
+                } catch (Exception e) {
+                    logger.warn("Could not build image variants of {}: {}", original.getFileName(), e.getMessage());
+                } finally {
+                    pending.remove(original);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Queue is full, the next request for a variant schedules it again
+            pending.remove(original);
+        }
+    }
+
+    public static boolean isSupportedSize(String size) {
+        return size != null && SIZES.containsKey(size.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * The stored variant of the original, empty while it is still being built.
+     * A missing variant is scheduled, so images uploaded before this pipeline catch up on first use.
+     */
+    public Optional<Path> findVariant(Path original, String size) {
+        Path variant = variantPath(original, size.toLowerCase(Locale.ROOT));
+        if (Files.isRegularFile(variant)) {
+            return Optional.of(variant);
+        }
+        generateAsync(original);
+        return Optional.empty();
+    }
+
+    public void deleteVariants(Path original) throws IOException {
+        for (String size : SIZES.keySet()) {
+            Path variant = variantPath(original, size);
+            Files.deleteIfExists(variant);
+            imageByteCache.invalidate(variant);
+        }
+    }
+
+    /*
+        Keeps the variants with their original when it moves to another folder
+     */
+    public void moveVariants(Path from, Path to) throws IOException {
+        for (String size : SIZES.keySet()) {
+            Path variant = variantPath(from, size);
+            if (Files.exists(variant)) {
+                Path target = variantPath(to, size);
+                Files.createDirectories(target.getParent());
+                Files.move(variant, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                imageByteCache.invalidate(variant);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    /*
+        ############## Resize ##############
+     */
+    private void generate(Path original) throws IOException {
+        if (SIZES.keySet().stream().allMatch(size -> Files.exists(variantPath(original, size)))) {
+            // e.g. a deduplicated upload of an image seen before
+            return;
+        }
+
+        BufferedImage source = read(original);
+        if (source == null) {
+            // Not an image ImageIO can decode, keep serving the original
+            return;
+        }
+        source = orient(source, readOrientation(original));
+
+        Files.createDirectories(original.resolveSibling(VARIANT_FOLDER));
+        for (Map.Entry<String, Integer> size : SIZES.entrySet()) {
+            Path target = variantPath(original, size.getKey());
+            if (Files.exists(target)) {
+                continue;
+            }
+            // Each size is scaled from the one before it, which keeps small thumbnails sharp
+            BufferedImage resized = resize(source, size.getValue());
+            source = resized;
+
+            // Write to a temp file first so a half written variant is never served
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            writeJpeg(resized, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        logger.info("Image variants built for {}", original.getFileName());
+    }
+
+    /*
+        Decode with subsampling so a large photo is never fully expanded in memory,
+        the decoded image stays at least as large as the biggest variant
+     */
+    private BufferedImage read(Path original) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, longSide / LARGEST_SIZE);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage source, int maxSide) {
+        double scale = Math.min(1.0, (double) maxSide / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // RGB without alpha for JPEG, transparent areas become white
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /*
+        Turn the decoded pixels the way the EXIF orientation (1-8) says the photo is shown
+     */
+    private static BufferedImage orient(BufferedImage source, int orientation) {
+        int w = source.getWidth(), h = source.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // mirrored
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // upside down
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // mirrored upside down
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // transposed
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // turn 90 degrees clockwise
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // transversed
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);   // turn 90 degrees counterclockwise
+            default -> null;
+        };
+        if (transform == null) {
+            return source;
+        }
+
+        boolean swapsSides = orientation >= 5;
+        BufferedImage target = new BufferedImage(swapsSides ? h : w, swapsSides ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, target.getWidth(), target.getHeight());
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /*
+        Orientation tag of a JPEG's EXIF (APP1) segment, 1 (as stored) when there is none
+     */
+    private static int readOrientation(Path original) {
+        try (InputStream file = Files.newInputStream(original);
+             DataInputStream input = new DataInputStream(file)) {
+            if (input.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = input.readUnsignedShort();
+                // Start of scan or not a marker: the metadata segments are over
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return 1;
+                }
+                int length = input.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                byte[] segment = new byte[length];
+                input.readFully(segment);
+                if (marker == 0xFFE1 && length > 14
+                        && new String(segment, 0, 6, StandardCharsets.ISO_8859_1).equals("Exif\0\0")) {
+                    return orientationOf(ByteBuffer.wrap(segment, 6, length - 6).slice());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable, truncated or malformed metadata, use the pixels as stored
+            return 1;
+        }
+    }
+
+    private static int orientationOf(ByteBuffer tiff) {
+        tiff.order(tiff.getShort(0) == 0x4949 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN); // "II" or "MM"
+        int ifd = tiff.getInt(4);
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == EXIF_ORIENTATION_TAG) {
+                int orientation = tiff.getShort(entry + 8) & 0xFFFF;
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    private void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static Path variantPath(Path original, String size) {
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String baseName = dot > 0 ? name.substring(0, dot) : name;
+        return original.resolveSibling(VARIANT_FOLDER).resolve(baseName + "_" + size + ".jpg");
+    }
+}
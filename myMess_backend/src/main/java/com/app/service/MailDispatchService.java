@@ -0,0 +1,262 @@
+package com.app.service;
+
+import com.app.model.MailDeadLetter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process queue for outgoing mail, so a request never waits on SMTP.
+ * A small set of workers takes the queued mails in batches and sends each batch over one pooled
+ * SMTP connection (SmtpTransportPool). A failed send is retried with exponential backoff,
+ * and after the last attempt the mail is recorded in mail_dead_letters (without its body).
+ * Queue depth, send latency and outcomes are published as mail.* metrics.
+ */
+@Service
+public class MailDispatchService {
+
+    private final Logger logger = LoggerFactory.getLogger(MailDispatchService.class);
+
+    @Value("${mail.dispatch.workers:2}")
+    private int workers = 2;
+
+    @Value("${mail.dispatch.queue-capacity:1000}")
+    private int queueCapacity = 1000;
+
+    @Value("${mail.dispatch.max-attempts:4}")
+    private int maxAttempts = 4;
+
+    // Backoff before retry n is initial * 2^(n-1), with up to 20% jitter
+    @Value("${mail.dispatch.initial-backoff-ms:1000}")
+    private long initialBackoffMs = 1000;
+
+    // Mails a worker sends over one connection at a time
+    @Value("${mail.dispatch.batch-size:20}")
+    private int batchSize = 20;
+
+    @Autowired
+    private SmtpTransportPool smtpTransportPool;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<MailJob> queue;
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private volatile boolean running;
+    private ScheduledExecutorService retryScheduler;
+
+    // Mails waiting for their backoff to pass, whoever removes a mail from here sends or records it
+    private final Set<MailJob> waitingRetries = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private Timer deliveryLatency;
+    private Counter sent;
+    private Counter retried;
+    private Counter deadLettered;
+
+    private record MailJob(SimpleMailMessage message, int attempt, long enqueuedAtNanos) {
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(this::work, "mail-dispatch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+            workerThreads.add(thread);
+        }
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-dispatch-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("mail.queue.depth", this, MailDispatchService::queueDepth)
+                .register(meterRegistry);
+        // From enqueue to accepted by the SMTP server, retries included
+        deliveryLatency = Timer.builder("mail.delivery.latency")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        sent = Counter.builder("mail.sent").register(meterRegistry);
+        retried = Counter.builder("mail.retried").register(meterRegistry);
+        deadLettered = Counter.builder("mail.dead_letters").register(meterRegistry);
+    }
+
+
+    /*
+        ############## Enqueue ##############
+     */
+
+    /**
+     * Queue the mail and return at once.
+     * @return false if the queue is full, the mail is then recorded as a dead letter
+     */
+    public boolean enqueue(SimpleMailMessage message) {
+        MailJob job = new MailJob(message, 1, System.nanoTime());
+        if (queue.offer(job)) {
+            return true;
+        }
+        logger.warn("Mail queue is full, mail to {} not sent", recipient(message));
+        deadLetter(job, "Queue full");
+        return false;
+    }
+
+    public int queueDepth() {
+        return queue.size() + waitingRetries.size();
+    }
+
+
+    /*
+        ############## Send and retry ##############
+     */
+    private void work() {
+        List<MailJob> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                MailJob first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                // Whatever else is waiting goes out over the same connection
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                deliver(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Mail batch failed: {}", e.getMessage());
+                batch.forEach(this::failed);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void deliver(List<MailJob> batch) throws InterruptedException {
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (MailJob job : batch) {
+            messages.add(smtpTransportPool.toMimeMessage(job.message()));
+        }
+
+        Map<Integer, Exception> failures = smtpTransportPool.send(messages);
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            MailJob job = batch.get(i);
+            Exception failure = failures.get(i);
+            if (failure == null) {
+                deliveryLatency.record(now - job.enqueuedAtNanos(), TimeUnit.NANOSECONDS);
+                sent.increment();
+            } else {
+                logger.info("Mail to {} failed (attempt {}): {}", recipient(job.message()), job.attempt(), failure.getMessage());
+                failed(job, failure.getMessage());
+            }
+        }
+    }
+
+    private void failed(MailJob job) {
+        failed(job, "Send failed");
+    }
+
+    private void failed(MailJob job, String error) {
+        if (job.attempt() >= maxAttempts) {
+            logger.warn("Mail to {} failed after {} attempts: {}", recipient(job.message()), job.attempt(), error);
+            deadLetter(job, error);
+            return;
+        }
+        retried.increment();
+        scheduleRetry(new MailJob(job.message(), job.attempt() + 1, job.enqueuedAtNanos()));
+    }
+
+    private void scheduleRetry(MailJob job) {
+        long backoff = initialBackoffMs << Math.min(job.attempt() - 2, 16);
+        long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+
+        waitingRetries.add(job);
+        try {
+            retryScheduler.schedule(() -> {
+                if (waitingRetries.remove(job) && !queue.offer(job)) {
+                    deadLetter(job, "Queue full");
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            if (waitingRetries.remove(job)) {
+                deadLetter(job, "Shut down before retry");
+            }
+        }
+    }
+
+    private void deadLetter(MailJob job, String error) {
+        deadLettered.increment();
+        try {
+            mongoTemplate.insert(MailDeadLetter.builder()
+                    .to(recipient(job.message()))
+                    .subject(job.message().getSubject())
+                    .attempts(job.attempt())
+                    .lastError(error)
+                    .failedAt(LocalDateTime.now())
+                    .build());
+        } catch (RuntimeException e) {
+            logger.warn("Could not record dead letter for {}: {}", recipient(job.message()), e.getMessage());
+        }
+    }
+
+    private static String recipient(SimpleMailMessage message) {
+        String[] to = message.getTo();
+        return to == null || to.length == 0 ? null : String.join(",", to);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryScheduler.shutdownNow();
+        // Retries still in their backoff get their attempt now instead of being dropped with the scheduler
+        for (MailJob job : waitingRetries) {
+            if (waitingRetries.remove(job) && !queue.offer(job)) {
+                deadLetter(job, "Queue full");
+            }
+        }
+
+        // Workers finish what is queued, but get only a moment for it
+        running = false;
+        for (Thread thread : workerThreads) {
+            thread.join(5_000);
+        }
+
+        // Whatever they did not get to is recorded, never silently lost
+        List<MailJob> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        unsent.forEach(job -> deadLetter(job, "Shut down before send"));
+    }
+}
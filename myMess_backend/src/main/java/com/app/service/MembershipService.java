@@ -0,0 +1,273 @@
+package com.app.service;
+
+import com.app.Utility.DtoMapper;
+import com.app.Utility.Helper;
+import com.app.dto.PageableResponse;
+import com.app.dto.UserDto;
+import com.app.model.MessMembership;
+import com.app.model.MessOwner;
+import com.app.model.User;
+import com.app.repository.MessMembershipRepository;
+import com.app.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class MembershipService {
+
+    Logger logger = LoggerFactory.getLogger(MembershipService.class);
+
+    // Membership fields the member list can be sorted by, "name" is the copied user name
+    private static final Set<String> SORTABLE_FIELDS = Set.of("userName", "userEmail", "joinedAt", "joinDate");
+
+    @Autowired
+    private MessMembershipRepository membershipRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+
+    /*
+        ############## Create indexes and move embedded joinedUsers into the membership collection ##############
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initMemberships() {
+        IndexOperations indexOps = mongoTemplate.indexOps(MessMembership.class);
+        new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(MessMembership.class)
+                .forEach(indexOps::ensureIndex);
+
+        // One-time migration, only while the membership collection is still empty
+        if (mongoTemplate.count(new Query(), MessMembership.class) == 0) {
+            migrateJoinedUsers();
+        }
+        backfillMemberNames();
+        syncJoinedUsers();
+    }
+
+    private void migrateJoinedUsers() {
+        Query withMembers = new Query(Criteria.where("joinedUsers.0").exists(true));
+        withMembers.fields().include("email", "joinedUsers");
+        List<MessOwner> messes = mongoTemplate.find(withMembers, MessOwner.class);
+
+        // Names are copied so the member list can be sorted by name, plan info only if the user is still in that mess
+        Set<String> emails = messes.stream().flatMap(mess -> mess.getJoinedUsers().stream()).collect(Collectors.toSet());
+        Map<String, User> users = usersByEmail(emails);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessMembership.class);
+        int migrated = 0;
+        for (MessOwner mess : messes) {
+            for (String userEmail : mess.getJoinedUsers()) {
+                Query key = new Query(Criteria.where("messId").is(mess.getId()).and("userEmail").is(userEmail));
+                Update insert = new Update()
+                        .setOnInsert("messEmail", mess.getEmail())
+                        .setOnInsert("joinedAt", LocalDateTime.now())
+                        .setOnInsert("active", true);
+
+                User user = users.get(userEmail);
+                if (user != null) {
+                    insert.setOnInsert("userName", user.getName());
+                    if (mess.getId().equals(user.getMessId())) {
+                        insert.setOnInsert("joinDate", user.getJoinDate())
+                                .setOnInsert("subscriptionPlan", user.getSubscriptionPlan())
+                                .setOnInsert("foodType", user.getFoodType());
+                    }
+                }
+                bulk.upsert(key, insert);
+                migrated++;
+            }
+        }
+
+        if (migrated > 0) {
+            bulk.execute();
+            logger.info("Migrated {} embedded mess members into mess_memberships", migrated);
+        }
+    }
+
+    /*
+        Memberships migrated before names were copied
+     */
+    private void backfillMemberNames() {
+        Query withoutName = new Query(Criteria.where("userName").is(null));
+        withoutName.fields().include("userEmail");
+
+        Set<String> emails = mongoTemplate.find(withoutName, MessMembership.class).stream()
+                .map(MessMembership::getUserEmail)
+                .collect(Collectors.toSet());
+        if (emails.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessMembership.class);
+        Map<String, User> users = usersByEmail(emails);
+        for (User user : users.values()) {
+            bulk.updateMulti(new Query(Criteria.where("userEmail").is(user.getEmail()).and("userName").is(null)),
+                    Update.update("userName", user.getName()));
+        }
+        if (!users.isEmpty()) {
+            bulk.execute();
+            logger.info("Copied user names into the memberships of {} users", users.size());
+        }
+    }
+
+    /*
+        MessOwner.joinedUsers stays only as a read-only copy for API clients that list members from the mess.
+        Memberships decide who is a member, this repairs a copy that got out of step (e.g. a crash between the two writes).
+     */
+    private void syncJoinedUsers() {
+        Query active = new Query(Criteria.where("active").is(true));
+        active.fields().include("messId", "userEmail");
+
+        Map<String, Set<String>> membersByMess = mongoTemplate.find(active, MessMembership.class).stream()
+                .collect(Collectors.groupingBy(MessMembership::getMessId,
+                        Collectors.mapping(MessMembership::getUserEmail, Collectors.toSet())));
+
+        Query withCopy = new Query();
+        withCopy.fields().include("joinedUsers");
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessOwner.class);
+        int repaired = 0;
+        for (MessOwner mess : mongoTemplate.find(withCopy, MessOwner.class)) {
+            Set<String> members = membersByMess.getOrDefault(mess.getId(), Set.of());
+            List<String> copy = mess.getJoinedUsers() == null ? List.of() : mess.getJoinedUsers();
+            if (copy.size() != members.size() || !members.containsAll(copy)) {
+                // Only if the copy is still what was read, a join or leave in the meantime wins
+                bulk.updateOne(new Query(Criteria.where("_id").is(mess.getId()).and("joinedUsers").is(mess.getJoinedUsers())),
+                        Update.update("joinedUsers", List.copyOf(members)));
+                repaired++;
+            }
+        }
+
+        if (repaired > 0) {
+            bulk.execute();
+            logger.warn("Repaired joinedUsers of {} mess from mess_memberships", repaired);
+        }
+    }
+
+    private Map<String, User> usersByEmail(Set<String> emails) {
+        if (emails.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findByEmailIn(emails).stream()
+                .collect(Collectors.toMap(User::getEmail, Function.identity(), (first, second) -> first));
+    }
+
+
+    /*
+        ############## Membership lookups ##############
+     */
+    public boolean isMember(String messId, String userEmail) {
+        return membershipRepository.existsByMessIdAndUserEmailAndActiveTrue(messId, userEmail);
+    }
+
+    public long countMembers(String messId) {
+        return membershipRepository.countByMessIdAndActiveTrue(messId);
+    }
+
+    public PageableResponse<UserDto> getMembers(String messId, int pageNumber, int pageSize, String sortBy, String sortDir) {
+        String field = "name".equals(sortBy) ? "userName" : sortBy;
+        if (!SORTABLE_FIELDS.contains(field)) {
+            field = "joinedAt";
+        }
+
+        Sort sort = (sortDir.equalsIgnoreCase("desc")) ? (Sort.by(field).descending()) : (Sort.by(field).ascending());
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
+
+        Page<MessMembership> members = membershipRepository.findByMessIdAndActiveTrue(messId, pageable);
+
+        // Only the users on this page are read
+        List<String> emails = members.getContent().stream().map(MessMembership::getUserEmail).toList();
+        Map<String, User> users = userRepository.findByEmailIn(emails).stream()
+                .collect(Collectors.toMap(User::getEmail, Function.identity(), (first, second) -> first));
+
+        return Helper.getPageableResponse(members, membership -> {
+            User user = users.get(membership.getUserEmail());
+            if (user != null) {
+                return DtoMapper.toUserDto(user);
+            }
+            // The user document is gone, still list the member
+            UserDto dto = new UserDto();
+            dto.setName(membership.getUserName());
+            dto.setContact(membership.getUserEmail());
+            return dto;
+        });
+    }
+
+
+    /*
+        ############## Join / Leave ##############
+     */
+
+    /**
+     * Record that the user joined the mess, reusing the old membership if the user left before.
+     * A single upsert on the unique (messId, userEmail) key that only matches while the user is not an active member,
+     * so of two concurrent joins by the same user exactly one wins.
+     * @return false if the user already is an active member
+     */
+    public boolean join(MessOwner mess, User user, UserDto userDto) {
+        Query notMember = new Query(Criteria.where("messId").is(mess.getId()).and("userEmail").is(user.getEmail())
+                .and("active").ne(true));
+        Update update = new Update()
+                .set("messEmail", mess.getEmail())
+                .set("userName", user.getName())
+                .set("joinDate", userDto.getJoinDate())
+                .set("subscriptionPlan", userDto.getSubscriptionPlan())
+                .set("foodType", userDto.getFoodType())
+                .set("joinedAt", LocalDateTime.now())
+                .unset("leftAt")
+                .set("active", true);
+
+        try {
+            mongoTemplate.upsert(notMember, update, MessMembership.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // The pair exists and is active (or another join inserted it first), the unique key stopped the insert
+            return false;
+        }
+    }
+
+    /**
+     * Mark the membership as left.
+     * @return false if the user was not a member
+     */
+    public boolean leave(String messId, String userEmail) {
+        Query query = new Query(Criteria.where("messId").is(messId).and("userEmail").is(userEmail).and("active").is(true));
+        Update update = new Update().set("active", false).set("leftAt", LocalDateTime.now());
+
+        return mongoTemplate.updateFirst(query, update, MessMembership.class).getModifiedCount() > 0;
+    }
+
+    /*
+        Keep the copied user name in sync when the user renames
+     */
+    public void renameMember(String userEmail, String userName) {
+        mongoTemplate.updateMulti(new Query(Criteria.where("userEmail").is(userEmail)),
+                Update.update("userName", userName), MessMembership.class);
+    }
+}
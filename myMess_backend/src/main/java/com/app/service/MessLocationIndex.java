@@ -0,0 +1,377 @@
+package com.app.service;
+
+import com.app.model.MessOwner;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * In-memory grid index over mess coordinates.
+ * The map is cut into fixed cells of CELL_SIZE_DEGREES and every mess is kept in the cell
+ * that contains it, so nearby and bounding-box lookups only visit the few cells covering
+ * the search area and never touch MongoDB.
+ */
+@Service
+public class MessLocationIndex {
+
+    private final Logger logger = LoggerFactory.getLogger(MessLocationIndex.class);
+
+    private static final double CELL_SIZE_DEGREES = 0.05; // ~5.5 km of latitude
+    private static final long COLUMNS = (long) Math.ceil(360 / CELL_SIZE_DEGREES);
+    private static final double KM_PER_DEGREE = 111.32;
+    private static final int EARTH_RADIUS_KM = 6371;
+
+    // Every field a lookup answers with or filters on, nothing else is loaded
+    private static final String[] SERVED_FIELDS = {"name", "contact", "email", "messName", "messAddress", "messType",
+            "capacity", "pricePerMeal", "subscriptionPlan", "currentDate", "imageName", "messImages", "joinedUsers",
+            "latitude", "longitude", "averageRating", "feedbackCount"};
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // cell key -> ids of the messes inside that cell
+    private volatile Map<Long, Set<String>> cells = new ConcurrentHashMap<>();
+
+    // mess id -> latest snapshot of the mess
+    private volatile Map<String, MessOwner> messes = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    public record Hit(MessOwner mess, double distance) {}
+
+
+    /*
+        ############## Rebuild the whole index from the mess collection ##############
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        Map<Long, Set<String>> newCells = new ConcurrentHashMap<>();
+        Map<String, MessOwner> newMesses = new ConcurrentHashMap<>();
+
+        for (MessOwner mess : mongoTemplate.find(indexedMessQuery(), MessOwner.class)) {
+            newMesses.put(mess.getId(), mess);
+            newCells.computeIfAbsent(cellOf(mess.getLatitude(), mess.getLongitude()), key -> ConcurrentHashMap.newKeySet())
+                    .add(mess.getId());
+        }
+
+        cells = newCells;
+        messes = newMesses;
+        ready = true;
+
+        logger.info("Mess location index built with {} mess in {} cells", newMesses.size(), newCells.size());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+
+    /*
+        ############## Incremental updates ##############
+     */
+    public synchronized void upsert(MessOwner mess) {
+        if (mess == null || mess.getId() == null) {
+            return;
+        }
+
+        MessOwner previous = messes.get(mess.getId());
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+
+        if (mess.getLatitude() == null || mess.getLongitude() == null) {
+            messes.remove(mess.getId());
+            return;
+        }
+
+        messes.put(mess.getId(), served(mess));
+        cells.computeIfAbsent(cellOf(mess.getLatitude(), mess.getLongitude()), key -> ConcurrentHashMap.newKeySet())
+                .add(mess.getId());
+    }
+
+    public synchronized void remove(String messId) {
+        MessOwner previous = messes.remove(messId);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+    }
+
+    private void removeFromCell(MessOwner mess) {
+        long key = cellOf(mess.getLatitude(), mess.getLongitude());
+        Set<String> ids = cells.get(key);
+        if (ids != null) {
+            ids.remove(mess.getId());
+            if (ids.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+
+    /*
+        ############## Queries ##############
+     */
+
+    /**
+     * Messes within radiusInKm of the given point, nearest first.
+     */
+    public List<Hit> findNearby(double latitude, double longitude, double radiusInKm) {
+        double latDelta = radiusInKm / KM_PER_DEGREE;
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double lngDelta = cosLat < 1e-6 ? 180 : Math.min(180, radiusInKm / (KM_PER_DEGREE * cosLat));
+
+        List<Hit> hits = new ArrayList<>();
+        for (MessOwner mess : candidates(latitude - latDelta, longitude - lngDelta, latitude + latDelta, longitude + lngDelta)) {
+            double distance = distanceInKm(latitude, longitude, mess.getLatitude(), mess.getLongitude());
+            if (distance <= radiusInKm) {
+                hits.add(new Hit(mess, distance));
+            }
+        }
+
+        hits.sort(Comparator.comparingDouble(Hit::distance));
+        return hits;
+    }
+
+    /**
+     * The k nearest messes matching the filter within maxRadiusInKm, nearest first.
+     * Cells are visited ring by ring around the query point and only a k-sized heap is kept,
+     * so the search stops as soon as no closer mess can exist.
+     */
+    public List<Hit> findNearest(double latitude, double longitude, int k, double maxRadiusInKm, Predicate<MessOwner> filter) {
+        // Max-heap on distance: the head is the farthest of the current best k
+        PriorityQueue<Hit> best = new PriorityQueue<>(k + 1, Comparator.comparingDouble(Hit::distance).reversed());
+
+        long centerRow = row(latitude), centerCol = column(longitude);
+        double cosLat = Math.max(Math.cos(Math.toRadians(Math.min(89, Math.abs(latitude) + CELL_SIZE_DEGREES))), 1e-6);
+        double ringWidthKm = CELL_SIZE_DEGREES * KM_PER_DEGREE * cosLat;
+        long maxRing = (long) Math.ceil(maxRadiusInKm / ringWidthKm) + 1;
+
+        Map<Long, Set<String>> currentCells = cells;
+        Map<String, MessOwner> currentMesses = messes;
+
+        // Rings wider than the occupied part of the map would mostly probe empty cells, check every mess once instead
+        double ringCells = Math.pow(2.0 * maxRing + 1, 2);
+        if (ringCells > currentCells.size()) {
+            for (MessOwner mess : currentMesses.values()) {
+                offer(best, k, mess, latitude, longitude, maxRadiusInKm, filter);
+            }
+        } else {
+            for (long ring = 0; ring <= maxRing; ring++) {
+                // Nothing in this ring or beyond can be closer than this
+                double ringMinDistance = Math.max(0, ring - 1) * ringWidthKm;
+                if (ringMinDistance > maxRadiusInKm || (best.size() == k && ringMinDistance > best.peek().distance())) {
+                    break;
+                }
+
+                for (long r = centerRow - ring; r <= centerRow + ring; r++) {
+                    for (long c = centerCol - ring; c <= centerCol + ring; c++) {
+                        // Only the border of the ring, the inside was visited already
+                        if (Math.abs(r - centerRow) != ring && Math.abs(c - centerCol) != ring) {
+                            continue;
+                        }
+                        if (r < 0 || c < 0 || c >= COLUMNS) {
+                            continue;
+                        }
+                        Set<String> ids = currentCells.get(r * COLUMNS + c);
+                        if (ids == null) {
+                            continue;
+                        }
+                        for (String id : ids) {
+                            offer(best, k, currentMesses.get(id), latitude, longitude, maxRadiusInKm, filter);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(Hit::distance));
+        return hits;
+    }
+
+    private static void offer(PriorityQueue<Hit> best, int k, MessOwner mess, double latitude, double longitude,
+                              double maxRadiusInKm, Predicate<MessOwner> filter) {
+        if (mess == null || !filter.test(mess)) {
+            return;
+        }
+        double distance = distanceInKm(latitude, longitude, mess.getLatitude(), mess.getLongitude());
+        if (distance > maxRadiusInKm) {
+            return;
+        }
+        if (best.size() < k) {
+            best.add(new Hit(mess, distance));
+        } else if (distance < best.peek().distance()) {
+            best.poll();
+            best.add(new Hit(mess, distance));
+        }
+    }
+
+    /**
+     * Messes inside the given bounding box.
+     */
+    public List<MessOwner> findInBounds(double minLat, double minLng, double maxLat, double maxLng) {
+        List<MessOwner> result = new ArrayList<>();
+        for (MessOwner mess : candidates(minLat, minLng, maxLat, maxLng)) {
+            if (mess.getLatitude() >= minLat && mess.getLatitude() <= maxLat
+                    && mess.getLongitude() >= minLng && mess.getLongitude() <= maxLng) {
+                result.add(mess);
+            }
+        }
+        return result;
+    }
+
+    private List<MessOwner> candidates(double minLat, double minLng, double maxLat, double maxLng) {
+        long minRow = row(minLat), maxRow = row(maxLat);
+        long minCol = column(minLng), maxCol = column(maxLng);
+
+        Map<Long, Set<String>> currentCells = cells;
+        Map<String, MessOwner> currentMesses = messes;
+
+        List<MessOwner> result = new ArrayList<>();
+
+        // A box covering more cells than are occupied: walk the occupied cells instead of probing empty ones
+        long boxCells = (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        if (boxCells > currentCells.size()) {
+            for (Map.Entry<Long, Set<String>> cell : currentCells.entrySet()) {
+                long r = cell.getKey() / COLUMNS, c = cell.getKey() % COLUMNS;
+                if (r >= minRow && r <= maxRow && c >= minCol && c <= maxCol) {
+                    collect(cell.getValue(), currentMesses, result);
+                }
+            }
+            return result;
+        }
+
+        for (long r = minRow; r <= maxRow; r++) {
+            for (long c = minCol; c <= maxCol; c++) {
+                Set<String> ids = currentCells.get(r * COLUMNS + c);
+                if (ids != null) {
+                    collect(ids, currentMesses, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void collect(Set<String> ids, Map<String, MessOwner> messes, List<MessOwner> result) {
+        for (String id : ids) {
+            MessOwner mess = messes.get(id);
+            if (mess != null) {
+                result.add(mess);
+            }
+        }
+    }
+
+
+    /*
+        ############## Consistency check against the mess collection ##############
+     */
+    @Scheduled(fixedDelayString = "${mess.location.index.check-interval-ms:600000}",
+            initialDelayString = "${mess.location.index.check-interval-ms:600000}")
+    public void verifyConsistency() {
+        if (!ready) {
+            return;
+        }
+
+        // Only ids and coordinates: the other fields change on every join and feedback, and the
+        // upsert that follows each of those writes may not have landed yet when this reads
+        Query query = new Query(Criteria.where("latitude").ne(null).and("longitude").ne(null));
+        query.fields().include("latitude", "longitude");
+
+        Map<String, MessOwner> stored = new HashMap<>();
+        for (MessOwner mess : mongoTemplate.find(query, MessOwner.class)) {
+            stored.put(mess.getId(), mess);
+        }
+
+        int missing = 0, moved = 0, stale = 0;
+        for (MessOwner mess : stored.values()) {
+            MessOwner indexed = messes.get(mess.getId());
+            if (indexed == null) {
+                missing++;
+            } else if (!mess.getLatitude().equals(indexed.getLatitude()) || !mess.getLongitude().equals(indexed.getLongitude())) {
+                moved++;
+            }
+        }
+        for (String id : messes.keySet()) {
+            if (!stored.containsKey(id)) {
+                stale++;
+            }
+        }
+
+        if (missing + moved + stale > 0) {
+            logger.warn("Mess location index drifted from the mess collection (missing: {}, moved: {}, stale: {}), rebuilding",
+                    missing, moved, stale);
+            rebuild();
+        }
+    }
+
+
+    /*
+        ############## Helpers ##############
+     */
+    private Query indexedMessQuery() {
+        Query query = new Query(Criteria.where("latitude").ne(null).and("longitude").ne(null));
+        query.fields().include(SERVED_FIELDS);
+        return query;
+    }
+
+    // Same reduced copy the rebuild loads, so no password hash or attendance list is kept in memory
+    private MessOwner served(MessOwner mess) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(mess, document);
+
+        Document served = new Document("_id", document.get("_id"));
+        for (String field : SERVED_FIELDS) {
+            if (document.containsKey(field)) {
+                served.put(field, document.get(field));
+            }
+        }
+        return mongoTemplate.getConverter().read(MessOwner.class, served);
+    }
+
+    private static long row(double latitude) {
+        return (long) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / CELL_SIZE_DEGREES);
+    }
+
+    private static long column(double longitude) {
+        return (long) Math.floor((Math.max(-180, Math.min(180, longitude)) + 180) / CELL_SIZE_DEGREES);
+    }
+
+    private static long cellOf(double latitude, double longitude) {
+        return row(latitude) * COLUMNS + column(longitude);
+    }
+
+    /**
+     * Calculate distance between two locations using Haversine formula
+     * @return distance in kilometers
+     */
+    public static double distanceInKm(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+}
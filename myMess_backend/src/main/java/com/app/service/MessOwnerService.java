@@ -1,5 +1,6 @@
 package com.app.service;
 
+import com.app.Utility.DtoMapper;
 import com.app.Utility.Helper;
 import com.app.dto.*;
 import com.app.exceptions.ResourceNotFoundException;
@@ -7,21 +8,41 @@ import com.app.model.MessOwner;
 import com.app.model.User;
 import com.app.repository.MessOwnerRepository;
 import com.app.repository.UserRepository;
-import org.modelmapper.ModelMapper;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 
@@ -30,11 +51,36 @@ public class MessOwnerService {
 
     Logger logger= LoggerFactory.getLogger(MessOwnerService.class);
 
+    private static final int MAX_CARD_PAGE_SIZE = 100;
+    private static final int MAX_NEAREST_LIMIT = 50;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private MessOwnerRepository messOwnerRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MessLocationIndex messLocationIndex;
+
+    @Autowired
+    private MessSearchIndex messSearchIndex;
+
+    @Autowired
+    private MembershipService membershipService;
+
+    @Autowired
+    private AccountLookupService accountLookupService;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Value("${mess.profile.picture}")
+    private String imagePath;
+
     private final PasswordEncoder passwordEncoder;
 
     @Autowired
@@ -87,9 +133,9 @@ public class MessOwnerService {
         ############### Find Mess Owner by email ###############
      */
     public MessOwnerDto getMessOwnerByEmail(String email){
-        MessOwner messOwner = messOwnerRepository.findByEmail(email).orElseThrow(() -> new ResourceNotFoundException("Not found !!"));
+        MessOwner messOwner = accountLookupService.findMessOwnerByEmail(email).orElseThrow(() -> new ResourceNotFoundException("Not found !!"));
 
-        return new ModelMapper().map(messOwner,MessOwnerDto.class);
+        return DtoMapper.toMessOwnerDto(messOwner);
     }
 
 
@@ -100,86 +146,170 @@ public class MessOwnerService {
 
 
         MessOwner messOwner = messOwnerRepository.findByEmail(email).orElseThrow(() -> new ResourceNotFoundException("Not Found"));
+        String previousImage = messOwner.getImageName();
+        List<String> previousMessImages = messOwner.getMessImages() == null ? List.of() : new ArrayList<>(messOwner.getMessImages());
+
+        // Only the fields the request supplies are $set. joinedUsers is never written here, and a
+        // client that leaves capacity out does not undo the seats a concurrent join or leave took
+        Update update = new Update();
 
         if(messOwnerDto.getName()!=null && !messOwnerDto.getName().isBlank()){
-            messOwner.setName(messOwnerDto.getName());
+            update.set("name", messOwnerDto.getName());
         }
 
-        if(messOwnerDto.getMessAddress()!=null && !messOwnerDto.getMessName().isBlank()){
-            messOwner.setMessName(messOwnerDto.getMessName());
+        if(messOwnerDto.getMessName()!=null && !messOwnerDto.getMessName().isBlank()){
+            update.set("messName", messOwnerDto.getMessName());
         }
 
         if(messOwnerDto.getMessAddress()!=null && !messOwnerDto.getMessAddress().isBlank()){
-            messOwner.setMessAddress(messOwnerDto.getMessAddress());
+            update.set("messAddress", messOwnerDto.getMessAddress());
         }
         if(messOwnerDto.getContact()!=null && !messOwnerDto.getContact().isBlank()){
-            messOwner.setContact(messOwnerDto.getContact());
+            update.set("contact", messOwnerDto.getContact());
         }
         if(messOwnerDto.getMessType()!=null && !messOwnerDto.getMessType().isBlank()){
-            messOwner.setMessType(messOwnerDto.getMessType());
+            update.set("messType", messOwnerDto.getMessType());
         }
 
         if(messOwnerDto.getCapacity()!=null){
-            messOwner.setCapacity(messOwnerDto.getCapacity());
+            update.set("capacity", messOwnerDto.getCapacity());
         }
 
         if(messOwnerDto.getPricePerMeal()!=null){
-            messOwner.setPricePerMeal(messOwnerDto.getPricePerMeal());
+            update.set("pricePerMeal", messOwnerDto.getPricePerMeal());
         }
 
         if(messOwnerDto.getSubscriptionPlan()!=null){
-            messOwner.setSubscriptionPlan(messOwnerDto.getSubscriptionPlan());
+            update.set("subscriptionPlan", messOwnerDto.getSubscriptionPlan());
         }
 
         if(messOwnerDto.getImageName() != null && !messOwnerDto.getImageName().isBlank()){
-            messOwner.setImageName(messOwnerDto.getImageName());
+            update.set("imageName", messOwnerDto.getImageName());
         }
 
         if(messOwnerDto.getMessImages() != null){
-            messOwner.setMessImages(messOwnerDto.getMessImages());
+            update.set("messImages", messOwnerDto.getMessImages());
         }
 
+        Double longitude = messOwnerDto.getLongitude() != null ? messOwnerDto.getLongitude() : messOwner.getLongitude();
+        Double latitude = messOwnerDto.getLatitude() != null ? messOwnerDto.getLatitude() : messOwner.getLatitude();
         if(messOwnerDto.getLongitude()!=null){
-            messOwner.setLongitude(messOwnerDto.getLongitude());
+            update.set("longitude", longitude);
         }
 
         if(messOwnerDto.getLatitude()!=null){
-            messOwner.setLatitude(messOwnerDto.getLatitude());
+            update.set("latitude", latitude);
+        }
+
+        // Keep the indexed GeoJSON point in sync with the coordinates (GeoJSON order is longitude, latitude)
+        if((messOwnerDto.getLatitude()!=null || messOwnerDto.getLongitude()!=null) && latitude!=null && longitude!=null){
+            update.set("location", new GeoJsonPoint(longitude, latitude));
         }
 
         // Encrypt the password if it's updated
 
 
         //Save the updated Mess Owner Details
-        MessOwner updatedMessOwner = messOwnerRepository.save(messOwner);
+        MessOwner updatedMessOwner = update.getUpdateObject().isEmpty() ? messOwner : mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(messOwner.getId())),
+                update,
+                FindAndModifyOptions.options().returnNew(true),
+                MessOwner.class);
+        if(updatedMessOwner == null){
+            throw new ResourceNotFoundException("Not Found");
+        }
+        messLocationIndex.upsert(updatedMessOwner);
+        messSearchIndex.upsert(updatedMessOwner);
+        accountLookupService.evictMessOwner(email);
+
+        // Reference counts of content-addressed images that were set or dropped
+        List<String> before = new ArrayList<>(previousMessImages);
+        before.add(previousImage);
+        List<String> after = new ArrayList<>(updatedMessOwner.getMessImages() == null ? List.of() : updatedMessOwner.getMessImages());
+        after.add(updatedMessOwner.getImageName());
+        imageBlobService.replaceReferences(imagePath, before, after);
 
         logger.info("The {} update his mess Information", updatedMessOwner.getName());
 
-        return new ModelMapper().map(messOwner, MessOwnerDto.class);
+        return DtoMapper.toMessOwnerDto(updatedMessOwner);
     }
 
     /*
-        ############# Fetch Users in Mess #################
+        ########### Append gallery images in one atomic update ###########
      */
-    public PageableResponse<UserDto> messUsers(String messEmail, int pageNumber, int pageSize, String sortBy, String sortDir){
+    public MessOwnerDto addMessImages(String email, List<String> imageNames) {
+        MessOwner updated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("email").is(email)),
+                new Update().push("messImages").each(imageNames.toArray()),
+                FindAndModifyOptions.options().returnNew(true),
+                MessOwner.class);
+
+        if (updated == null) {
+            throw new ResourceNotFoundException("Not Found");
+        }
 
-        Sort sort = (sortDir.equalsIgnoreCase("desc"))? (Sort.by(sortBy).descending()) : (Sort.by(sortBy).ascending());
+        messLocationIndex.upsert(updated);
+        messSearchIndex.upsert(updated);
+        accountLookupService.evictMessOwner(email);
+        imageBlobService.retain(imagePath, imageNames);
 
-        Pageable pageable=PageRequest.of(pageNumber,pageSize,sort);
+        logger.info("{} images added to the {} mess gallery", imageNames.size(), updated.getMessName());
 
-        MessOwner mess = messOwnerRepository.findByEmail(messEmail).orElseThrow(() -> new ResourceNotFoundException("Not found"));
+        return DtoMapper.toMessOwnerDto(updated);
+    }
 
-        List<String> joinedUsersEmails = mess.getJoinedUsers();
+    /*
+        ########### Set the profile picture in one atomic update ###########
+     */
+    public MessOwnerDto setProfileImage(String email, String imageName) {
+        // The document before the update, so the replaced image is the one actually overwritten
+        MessOwner previous = mongoTemplate.findAndModify(
+                new Query(Criteria.where("email").is(email)),
+                new Update().set("imageName", imageName),
+                MessOwner.class);
+
+        if (previous == null) {
+            throw new ResourceNotFoundException("Not Found");
+        }
+
+        String previousImage = previous.getImageName();
+        previous.setImageName(imageName);
+
+        messLocationIndex.upsert(previous);
+        messSearchIndex.upsert(previous);
+        accountLookupService.evictMessOwner(email);
+        imageBlobService.replaceReferences(imagePath, Collections.singletonList(previousImage), List.of(imageName));
+
+        logger.info("The {} mess profile picture changed", previous.getMessName());
+
+        return DtoMapper.toMessOwnerDto(previous);
+    }
 
-        Page<User> users = userRepository.findByEmailIn(joinedUsersEmails,pageable);
+    /*
+        ############# Fetch Users in Mess #################
+     */
+    public PageableResponse<UserDto> messUsers(String messEmail, int pageNumber, int pageSize, String sortBy, String sortDir){
 
-//        List<UserDto> usersInMess = users.stream().map(user -> new ModelMapper().map(user, UserDto.class)).toList();
+        // Members are paged straight from the membership collection
+        return membershipService.getMembers(getMessId(messEmail), pageNumber, pageSize, sortBy, sortDir);
+    }
 
-//        System.out.println(users);
+    /*
+        ############# Count Users in Mess #################
+     */
+    public long countMessUsers(String messEmail){
+        return membershipService.countMembers(getMessId(messEmail));
+    }
 
-//        logger.info("");
+    private String getMessId(String messEmail){
+        Query query = new Query(Criteria.where("email").is(messEmail));
+        query.fields().include("_id");
 
-        return Helper.getPageableResponse(users,UserDto.class);
+        MessOwner mess = mongoTemplate.findOne(query, MessOwner.class);
+        if(mess == null){
+            throw new ResourceNotFoundException("Not found");
+        }
+        return mess.getId();
     }
 
 
@@ -189,8 +319,211 @@ public class MessOwnerService {
     public List<MessOwnerDto> getAllMess(){
         List<MessOwner> allMess = messOwnerRepository.findAll();
 
-        List<MessOwnerDto> allMessDto = allMess.stream().map(mess -> new ModelMapper().map(mess, MessOwnerDto.class)).toList();
+        List<MessOwnerDto> allMessDto = allMess.stream().map(mess -> DtoMapper.toMessOwnerDto(mess)).toList();
         return allMessDto;
     }
 
+
+    /*
+        ############## Fetch Mess Cards (projection + keyset pagination) ####################
+     */
+    public CursorPageResponse<MessCardDto> getMessCards(String cursor, int pageSize){
+        int size = Math.max(1, Math.min(pageSize, MAX_CARD_PAGE_SIZE));
+
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).limit(size + 1);
+        if(cursor != null && !cursor.isBlank()){
+            if(!ObjectId.isValid(cursor)){
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            query.addCriteria(Criteria.where("_id").gt(new ObjectId(cursor)));
+        }
+
+        // Only the card fields, never joinedUsers, attendance, messImages or the password
+        query.fields().include("email", "messName", "messAddress", "messType", "pricePerMeal",
+                "averageRating", "feedbackCount", "imageName", "latitude", "longitude");
+
+        List<MessCardDto> cards = mongoTemplate.find(query, MessCardDto.class, "mess");
+
+        // One extra document was fetched only to know whether another page exists
+        boolean lastPage = cards.size() <= size;
+        List<MessCardDto> content = lastPage ? cards : cards.subList(0, size);
+
+        return CursorPageResponse.<MessCardDto>builder()
+                .content(content)
+                .pageSize(size)
+                .nextCursor(lastPage ? null : content.get(content.size() - 1).getId())
+                .isLastPage(lastPage)
+                .build();
+    }
+
+
+    /*
+        ############## Search Mess by name and address ####################
+     */
+    public PageableResponse<MessCardDto> searchMess(String text, int pageNumber, int pageSize){
+        int number = Math.max(0, pageNumber);
+        int size = Math.max(1, Math.min(pageSize, MAX_CARD_PAGE_SIZE));
+
+        MessSearchIndex.Result result = messSearchIndex.search(text, number, size);
+        int totalPages = (result.totalElements() + size - 1) / size;
+
+        return PageableResponse.<MessCardDto>builder()
+                .content(result.content())
+                .pageNumber(number)
+                .pageSize(size)
+                .totalElement(result.totalElements())
+                .totalPages(totalPages)
+                .isLastPage(number >= totalPages - 1)
+                .build();
+    }
+
+
+    /*
+        ############## Fetch Nearby Mess using the 2dsphere index ####################
+     */
+    public List<MessOwnerDto> getNearbyMess(double latitude, double longitude, double radiusInKm){
+
+        // Answer from the in-memory grid once it has been built, MongoDB is only the fallback
+        if(messLocationIndex.isReady()){
+            return messLocationIndex.findNearby(latitude, longitude, radiusInKm).stream().map(hit -> {
+                MessOwnerDto dto = DtoMapper.toMessOwnerDto(hit.mess());
+                dto.setDistance(hit.distance());
+                return dto;
+            }).toList();
+        }
+
+        NearQuery nearQuery = NearQuery.near(new GeoJsonPoint(longitude, latitude))
+                .maxDistance(new Distance(radiusInKm, Metrics.KILOMETERS))
+                .spherical(true);
+
+        // $geoNear only returns messes inside the radius, already sorted by distance
+        GeoResults<MessOwner> results = mongoTemplate.geoNear(nearQuery, MessOwner.class);
+
+        return results.getContent().stream().map(result -> {
+            MessOwnerDto dto = DtoMapper.toMessOwnerDto(result.getContent());
+            dto.setDistance(result.getDistance().getValue());
+            return dto;
+        }).toList();
+    }
+
+
+    /*
+        ############## Fetch the K nearest Mess matching the filters ####################
+     */
+    public List<MessOwnerDto> getNearestMess(double latitude, double longitude, int limit, double maxRadiusInKm, NearbyMessFilter filter){
+        int k = Math.max(1, Math.min(limit, MAX_NEAREST_LIMIT));
+
+        if(messLocationIndex.isReady()){
+            return messLocationIndex.findNearest(latitude, longitude, k, maxRadiusInKm, matches(filter)).stream().map(hit -> {
+                MessOwnerDto dto = DtoMapper.toMessOwnerDto(hit.mess());
+                dto.setDistance(hit.distance());
+                return dto;
+            }).toList();
+        }
+
+        // Filters are pushed into $geoNear, which stops after k documents
+        NearQuery nearQuery = NearQuery.near(new GeoJsonPoint(longitude, latitude))
+                .maxDistance(new Distance(maxRadiusInKm, Metrics.KILOMETERS))
+                .spherical(true)
+                .query(toQuery(filter))
+                .limit(k);
+
+        return mongoTemplate.geoNear(nearQuery, MessOwner.class).getContent().stream().map(result -> {
+            MessOwnerDto dto = DtoMapper.toMessOwnerDto(result.getContent());
+            dto.setDistance(result.getDistance().getValue());
+            return dto;
+        }).toList();
+    }
+
+    private Predicate<MessOwner> matches(NearbyMessFilter filter){
+        return mess -> {
+            if(filter.getMessType() != null && !filter.getMessType().equalsIgnoreCase(mess.getMessType())){
+                return false;
+            }
+            if(filter.getMinPrice() != null && (mess.getPricePerMeal() == null || mess.getPricePerMeal() < filter.getMinPrice())){
+                return false;
+            }
+            if(filter.getMaxPrice() != null && (mess.getPricePerMeal() == null || mess.getPricePerMeal() > filter.getMaxPrice())){
+                return false;
+            }
+            if(filter.getMinRating() != null && (mess.getAverageRating() == null || mess.getAverageRating() < filter.getMinRating())){
+                return false;
+            }
+            return !filter.isOnlyAvailable() || (mess.getCapacity() != null && mess.getCapacity() > 0);
+        };
+    }
+
+    private Query toQuery(NearbyMessFilter filter){
+        Query query = new Query();
+        if(filter.getMessType() != null){
+            query.addCriteria(Criteria.where("messType").regex("^" + Pattern.quote(filter.getMessType()) + "$", "i"));
+        }
+        if(filter.getMinPrice() != null || filter.getMaxPrice() != null){
+            Criteria price = Criteria.where("pricePerMeal");
+            if(filter.getMinPrice() != null){
+                price.gte(filter.getMinPrice());
+            }
+            if(filter.getMaxPrice() != null){
+                price.lte(filter.getMaxPrice());
+            }
+            query.addCriteria(price);
+        }
+        if(filter.getMinRating() != null){
+            query.addCriteria(Criteria.where("averageRating").gte(filter.getMinRating()));
+        }
+        if(filter.isOnlyAvailable()){
+            query.addCriteria(Criteria.where("capacity").gt(0));
+        }
+        return query;
+    }
+
+
+    /*
+        ############## Fetch Mess inside a bounding box ####################
+     */
+    public List<MessOwnerDto> getMessInBounds(double minLat, double minLng, double maxLat, double maxLng){
+        if(messLocationIndex.isReady()){
+            return messLocationIndex.findInBounds(minLat, minLng, maxLat, maxLng).stream()
+                    .map(mess -> DtoMapper.toMessOwnerDto(mess))
+                    .toList();
+        }
+
+        Query query = new Query(Criteria.where("latitude").gte(minLat).lte(maxLat)
+                .and("longitude").gte(minLng).lte(maxLng));
+
+        return mongoTemplate.find(query, MessOwner.class).stream()
+                .map(mess -> DtoMapper.toMessOwnerDto(mess))
+                .toList();
+    }
+
+
+    /*
+        ############## Create 2dsphere index and backfill GeoJSON location ####################
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureGeoIndex(){
+        mongoTemplate.indexOps(MessOwner.class)
+                .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+
+        // Messes saved before the location field existed only have latitude/longitude
+        Query missingLocation = new Query(Criteria.where("location").exists(false)
+                .and("latitude").ne(null)
+                .and("longitude").ne(null));
+        missingLocation.fields().include("latitude", "longitude");
+
+        List<MessOwner> messes = mongoTemplate.find(missingLocation, MessOwner.class);
+        if(messes.isEmpty()){
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MessOwner.class);
+        for (MessOwner mess : messes){
+            bulk.updateOne(Query.query(Criteria.where("_id").is(mess.getId())),
+                    Update.update("location", new GeoJsonPoint(mess.getLongitude(), mess.getLatitude())));
+        }
+        bulk.execute();
+
+        logger.info("Backfilled GeoJSON location for {} mess", messes.size());
+    }
+
 }
@@ -0,0 +1,214 @@
+package com.app.service;
+
+import com.app.dto.MessCardDto;
+import com.app.model.MessOwner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over mess names and addresses.
+ * Tokens are kept in sorted maps so a query term matches both whole words and
+ * word prefixes (autocomplete) with a single range lookup.
+ */
+@Service
+public class MessSearchIndex {
+
+    private final Logger logger = LoggerFactory.getLogger(MessSearchIndex.class);
+
+    // Score of a query term depending on where and how it matched
+    private static final int NAME_EXACT = 4;
+    private static final int NAME_PREFIX = 2;
+    private static final int ADDRESS_EXACT = 2;
+    private static final int ADDRESS_PREFIX = 1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // token -> ids of the messes containing it
+    private final NavigableMap<String, Set<String>> nameTokens = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Set<String>> addressTokens = new ConcurrentSkipListMap<>();
+
+    // mess id -> card returned in results
+    private final Map<String, MessCardDto> cards = new ConcurrentHashMap<>();
+
+    public record Result(List<MessCardDto> content, int totalElements) {}
+
+
+    /*
+        ############## Build the index from the mess collection ##############
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        nameTokens.clear();
+        addressTokens.clear();
+        cards.clear();
+
+        Query query = new Query();
+        query.fields().include("email", "messName", "messAddress", "messType", "pricePerMeal",
+                "averageRating", "feedbackCount", "imageName", "latitude", "longitude");
+
+        for (MessCardDto card : mongoTemplate.find(query, MessCardDto.class, "mess")) {
+            add(card);
+        }
+
+        logger.info("Mess search index built with {} mess and {} tokens", cards.size(), nameTokens.size() + addressTokens.size());
+    }
+
+
+    /*
+        ############## Incremental updates ##############
+     */
+    public synchronized void upsert(MessOwner mess) {
+        if (mess == null || mess.getId() == null) {
+            return;
+        }
+        remove(mess.getId());
+        add(toCard(mess));
+    }
+
+    public synchronized void remove(String messId) {
+        MessCardDto previous = cards.remove(messId);
+        if (previous == null) {
+            return;
+        }
+        unlink(nameTokens, tokenize(previous.getMessName()), messId);
+        unlink(addressTokens, tokenize(previous.getMessAddress()), messId);
+    }
+
+    private void add(MessCardDto card) {
+        cards.put(card.getId(), card);
+        for (String token : tokenize(card.getMessName())) {
+            nameTokens.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(card.getId());
+        }
+        for (String token : tokenize(card.getMessAddress())) {
+            addressTokens.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(card.getId());
+        }
+    }
+
+    private void unlink(NavigableMap<String, Set<String>> tokens, Collection<String> words, String messId) {
+        for (String word : words) {
+            Set<String> ids = tokens.get(word);
+            if (ids != null) {
+                ids.remove(messId);
+                if (ids.isEmpty()) {
+                    tokens.remove(word);
+                }
+            }
+        }
+    }
+
+
+    /*
+        ############## Search ##############
+     */
+
+    /**
+     * Messes whose name or address contain every query term as a word or word prefix,
+     * best matches first.
+     */
+    public Result search(String text, int pageNumber, int pageSize) {
+        Set<String> terms = tokenize(text);
+        if (terms.isEmpty()) {
+            return new Result(List.of(), 0);
+        }
+
+        Map<String, Integer> scores = null;
+        for (String term : terms) {
+            Map<String, Integer> termScores = new HashMap<>();
+            score(nameTokens, term, NAME_EXACT, NAME_PREFIX, termScores);
+            score(addressTokens, term, ADDRESS_EXACT, ADDRESS_PREFIX, termScores);
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Every term has to match
+                scores.keySet().retainAll(termScores.keySet());
+                for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+                    entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                return new Result(List.of(), 0);
+            }
+        }
+
+        final Map<String, Integer> finalScores = scores;
+        List<MessCardDto> ranked = new ArrayList<>();
+        for (String id : finalScores.keySet()) {
+            MessCardDto card = cards.get(id);
+            if (card != null) {
+                ranked.add(card);
+            }
+        }
+        ranked.sort(Comparator.<MessCardDto>comparingInt(card -> finalScores.get(card.getId())).reversed()
+                .thenComparing(card -> card.getAverageRating() == null ? 0.0 : card.getAverageRating(), Comparator.reverseOrder())
+                .thenComparing(card -> card.getMessName() == null ? "" : card.getMessName()));
+
+        int from = Math.min(pageNumber * pageSize, ranked.size());
+        int to = Math.min(from + pageSize, ranked.size());
+        return new Result(ranked.subList(from, to), ranked.size());
+    }
+
+    private void score(NavigableMap<String, Set<String>> tokens, String term, int exactScore, int prefixScore,
+                       Map<String, Integer> termScores) {
+        // All tokens starting with term, the first one may be the term itself
+        for (Map.Entry<String, Set<String>> entry : tokens.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+            int score = entry.getKey().equals(term) ? exactScore : prefixScore;
+            for (String id : entry.getValue()) {
+                termScores.merge(id, score, Math::max);
+            }
+        }
+    }
+
+
+    /*
+        ############## Helpers ##############
+     */
+    private static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static MessCardDto toCard(MessOwner mess) {
+        return MessCardDto.builder()
+                .id(mess.getId())
+                .email(mess.getEmail())
+                .messName(mess.getMessName())
+                .messAddress(mess.getMessAddress())
+                .messType(mess.getMessType())
+                .pricePerMeal(mess.getPricePerMeal())
+                .averageRating(mess.getAverageRating())
+                .feedbackCount(mess.getFeedbackCount())
+                .imageName(mess.getImageName())
+                .latitude(mess.getLatitude())
+                .longitude(mess.getLongitude())
+                .build();
+    }
+}
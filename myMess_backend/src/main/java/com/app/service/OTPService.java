@@ -1,37 +1,77 @@
 package com.app.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
 @Service
 public class OTPService {
 
+    private final Logger logger = LoggerFactory.getLogger(OTPService.class);
+
     @Autowired
-    private JavaMailSender mailSender;
+    private MailDispatchService mailDispatchService;
 
 
-    @Value("$(spring.mail.username)")
+    @Value("${spring.mail.username}")
     private String fromEmailId;
 
 
-    private Map<String, String> otpStore = new HashMap<>();
-    private Map<String, LocalDateTime> otpTimestamps = new HashMap<>();
-    private static final int OTP_EXPIRATION_MINUTES = 5;
+    @Value("${otp.expiration-minutes:5}")
+    private long expirationMinutes = 5;
+
+    // Hard limit on pending OTPs, a flood of signups can not exhaust memory
+    @Value("${otp.max-pending:100000}")
+    private int maxPending = 100_000;
+
+    // Wrong guesses before the OTP is thrown away
+    @Value("${otp.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    /*
+        One pending OTP, replaced as a whole on every change
+     */
+    private record OtpEntry(String otp, long expiresAtMillis, int attempts) {
+        boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+
+    // contact -> pending OTP, every change of an entry is atomic per contact
+    private final ConcurrentMap<String, OtpEntry> otpStore = new ConcurrentHashMap<>();
+
+    // Number of entries in otpStore, kept next to the map so the capacity check is exact
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final SecureRandom random = new SecureRandom();
 
 
     // Generate and store OTP
     public String generateOtp(String contact) {
-        String otp = String.valueOf((int) (Math.random() * 9000) + 1000); // Generate a 4-digit OTP
-        otpStore.put(contact, otp);
-        otpTimestamps.put(contact, LocalDateTime.now());
+        String otp = String.valueOf(random.nextInt(9000) + 1000); // Generate a 4-digit OTP
+        long expiresAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(expirationMinutes);
+
+        // A new OTP replaces the previous one of the contact and resets its attempts
+        otpStore.compute(contact, (key, previous) -> {
+            if (previous == null && !reserveSlot()) {
+                throw new IllegalStateException("Too many pending OTPs, try again later");
+            }
+            return new OtpEntry(otp, expiresAt, 0);
+        });
         return otp;
     }
 
@@ -49,6 +89,7 @@ public class OTPService {
 
     /*
         ############## Send OTP on Email ##############
+        Queued, the request does not wait for SMTP. Retries and failures are handled by MailDispatchService
      */
     public void sendOtpEmail(String email, String otp) {
         SimpleMailMessage message = new SimpleMailMessage();
@@ -57,12 +98,7 @@ public class OTPService {
         message.setSubject("Your OTP Code");
         message.setText("Your OTP is: " + otp);
 
-        try {
-            mailSender.send(message);
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Handle exceptions properly
-        }
+        mailDispatchService.enqueue(message);
     }
 
     /*
@@ -78,28 +114,69 @@ public class OTPService {
         ############## Verify OTP #############
      */
     public boolean verifyOtp(String contact, String otp) {
-        if (!otpStore.containsKey(contact)) {
-            return false; // No OTP was generated for this contact
+        if (contact == null || otp == null) {
+            return false;
         }
 
-        // Check OTP match
-        String storedOtp = otpStore.get(contact);
-        if (!storedOtp.equals(otp)) {
-            return false; // OTP does not match
+        long now = System.currentTimeMillis();
+        boolean[] verified = {false};
+
+        // Check and update in one atomic step, two requests can never both use the same OTP
+        otpStore.computeIfPresent(contact, (key, entry) -> {
+            if (entry.isExpired(now)) {
+                return release(); // OTP expired
+            }
+            if (MessageDigest.isEqual(entry.otp().getBytes(StandardCharsets.UTF_8), otp.getBytes(StandardCharsets.UTF_8))) {
+                verified[0] = true;
+                return release(); // OTP is valid, clean up
+            }
+            int attempts = entry.attempts() + 1;
+            return attempts >= maxAttempts ? release() : new OtpEntry(entry.otp(), entry.expiresAtMillis(), attempts);
+        });
+        return verified[0];
+    }
+
+
+    /*
+        ############## Drop expired OTPs #############
+     */
+    @Scheduled(fixedDelayString = "${otp.sweep-interval-ms:60000}",
+            initialDelayString = "${otp.sweep-interval-ms:60000}")
+    public void removeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (String contact : otpStore.keySet()) {
+            OtpEntry entry = otpStore.get(contact);
+            // Conditional remove, loses against a fresh OTP generated in between
+            if (entry != null && entry.isExpired(now) && otpStore.remove(contact, entry)) {
+                pending.decrementAndGet();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} expired OTPs, {} pending", removed, pending.get());
         }
+    }
+
+    public int pendingCount() {
+        return pending.get();
+    }
 
-        // Check expiration
-        LocalDateTime storedTime = otpTimestamps.get(contact);
-        if (storedTime.plusMinutes(OTP_EXPIRATION_MINUTES).isBefore(LocalDateTime.now())) {
-            otpStore.remove(contact); // Clean up expired OTP
-            otpTimestamps.remove(contact);
-            return false; // OTP expired
+    private boolean reserveSlot() {
+        while (true) {
+            int current = pending.get();
+            if (current >= maxPending) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
         }
+    }
 
-        // OTP is valid, clean up
-        otpStore.remove(contact);
-        otpTimestamps.remove(contact);
-        return true;
+    // Frees the slot of an entry removed inside compute
+    private OtpEntry release() {
+        pending.decrementAndGet();
+        return null;
     }
 }
-
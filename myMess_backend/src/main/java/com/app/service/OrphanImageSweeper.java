@@ -0,0 +1,208 @@
+package com.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Deletes image files that no user or mess points at any more, e.g. a replaced profile picture
+ * or the gallery of a removed mess.
+ * Files on disk are compared with the users and mess collections in batches, so neither side is
+ * ever loaded whole, and the sweep pauses between batches so it never competes with requests for disk.
+ * Content-addressed files with a blob record are left to the blob sweeper in ImageBlobService.
+ * Only names uploads produce (a UUID or a SHA-256) are ever deleted, so static assets such as
+ * default-profile.jpg stay even though nothing references them.
+ */
+@Service
+public class OrphanImageSweeper {
+
+    private final Logger logger = LoggerFactory.getLogger(OrphanImageSweeper.class);
+
+    private static final String VARIANT_FOLDER = "variants";
+
+    // UUID names of plain uploads, SHA-256 names of content-addressed ones
+    private static final Pattern UPLOADED_NAME = Pattern.compile(
+            "([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64})\\.[a-z0-9]+",
+            Pattern.CASE_INSENSITIVE);
+
+    @Value("${file.orphan.enabled:true}")
+    private boolean enabled;
+
+    // Files younger than this are kept, covers an upload whose user / mess is not saved yet
+    @Value("${file.orphan.grace-minutes:60}")
+    private long graceMinutes;
+
+    @Value("${file.orphan.batch-size:500}")
+    private int batchSize;
+
+    // Pause after every batch, the I/O throttle
+    @Value("${file.orphan.batch-pause-ms:200}")
+    private long batchPauseMs;
+
+    @Value("${user.profile.picture}")
+    private String userImagePath;
+
+    @Value("${mess.profile.picture}")
+    private String messImagePath;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+    @Autowired
+    private ImageDirectoryIndex imageDirectoryIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter deletedFiles;
+    private Counter reclaimedBytes;
+
+    // A sweep runs on its own thread, never on the shared scheduler thread
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        deletedFiles = Counter.builder("image.orphans.deleted").register(meterRegistry);
+        reclaimedBytes = Counter.builder("image.orphans.reclaimed").baseUnit("bytes").register(meterRegistry);
+    }
+
+
+    /*
+        ############## Schedule ##############
+     */
+    @Scheduled(fixedDelayString = "${file.orphan.sweep-interval-ms:21600000}",
+            initialDelayString = "${file.orphan.sweep-interval-ms:21600000}")
+    public void sweepAsync() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                sweep(messImagePath);
+                sweep(userImagePath);
+            } finally {
+                running.set(false);
+            }
+        }, "orphan-image-sweeper");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+
+    /*
+        ############## Sweep one folder ##############
+     */
+    private void sweep(String path) {
+        Path root = Paths.get(path).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(graceMinutes, ChronoUnit.MINUTES);
+        long start = System.currentTimeMillis();
+        long[] totals = new long[3]; // checked, deleted, bytes
+
+        // Top folder plus the two shard levels, read lazily
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            Map<String, Path> batch = new LinkedHashMap<>();
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                if (!isCandidate(file, cutoff)) {
+                    continue;
+                }
+                batch.put(file.getFileName().toString(), file);
+                if (batch.size() >= batchSize) {
+                    sweepBatch(path, root, batch, totals);
+                    batch.clear();
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+            if (!batch.isEmpty()) {
+                sweepBatch(path, root, batch, totals);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Orphan sweep of {} stopped: {}", root, e.getMessage());
+        }
+
+        if (totals[1] > 0) {
+            logger.info("Orphan sweep of {}: {} files checked, {} deleted, {} bytes reclaimed in {} ms",
+                    root, totals[0], totals[1], totals[2], System.currentTimeMillis() - start);
+        }
+    }
+
+    private void sweepBatch(String path, Path root, Map<String, Path> batch, long[] totals) {
+        totals[0] += batch.size();
+
+        Set<String> keep = imageBlobService.referencedNames(batch.keySet());
+        keep.addAll(imageBlobService.trackedNames(path, batch.keySet()));
+
+        for (Map.Entry<String, Path> candidate : batch.entrySet()) {
+            if (keep.contains(candidate.getKey())) {
+                continue;
+            }
+            Path file = candidate.getValue();
+            try {
+                long size = Files.size(file);
+                if (!Files.deleteIfExists(file)) {
+                    continue;
+                }
+                imageByteCache.invalidate(file);
+                imageDirectoryIndex.removed(root, candidate.getKey());
+                imageVariantService.deleteVariants(file);
+
+                totals[1]++;
+                totals[2] += size;
+                deletedFiles.increment();
+                reclaimedBytes.increment(size);
+            } catch (IOException e) {
+                logger.warn("Could not delete orphaned image {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isCandidate(Path file, Instant cutoff) {
+        String name = file.getFileName().toString();
+        if (!UPLOADED_NAME.matcher(name).matches() || !Files.isRegularFile(file)
+                || file.getParent().getFileName().toString().equals(VARIANT_FOLDER)) {
+            return false;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            // Gone in the meantime
+            return false;
+        }
+    }
+}
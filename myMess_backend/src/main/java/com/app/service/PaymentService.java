@@ -1,5 +1,6 @@
 package com.app.service;
 
+import com.app.Utility.DtoMapper;
 import com.app.dto.PaymentDto;
 import com.app.model.MessOwner;
 import com.app.model.Payment;
@@ -8,7 +9,6 @@ import com.app.repository.MessOwnerRepository;
 import com.app.repository.PaymentRepository;
 import com.app.repository.UserRepository;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -30,9 +30,9 @@ public class PaymentService {
     
     @Autowired
     private MessOwnerRepository messOwnerRepository;
-    
+
     @Autowired
-    private ModelMapper modelMapper;
+    private AccountLookupService accountLookupService;
     
     /**
      * Records a new payment from a user to a mess
@@ -40,7 +40,7 @@ public class PaymentService {
     public PaymentDto recordPayment(String userEmail, String ownerEmail, String messId, 
                                  double amountPaid, double remainingDues) {
         // Verify that the user and mess exist
-        Optional<User> userOpt = userRepository.findByEmail(userEmail);
+        Optional<User> userOpt = accountLookupService.findUserByEmail(userEmail);
         Optional<MessOwner> messOpt = messOwnerRepository.findById(messId);
         
         if (userOpt.isEmpty() || messOpt.isEmpty()) {
@@ -172,10 +172,10 @@ public class PaymentService {
      * Convert a Payment entity to a PaymentDto
      */
     private PaymentDto convertToDto(Payment payment) {
-        PaymentDto dto = modelMapper.map(payment, PaymentDto.class);
+        PaymentDto dto = DtoMapper.toPaymentDto(payment);
         
         // Fetch and set additional display data
-        Optional<User> userOpt = userRepository.findByEmail(payment.getUserEmail());
+        Optional<User> userOpt = accountLookupService.findUserByEmail(payment.getUserEmail());
         userOpt.ifPresent(user -> dto.setUserName(user.getName()));
         
         Optional<MessOwner> messOpt = messOwnerRepository.findById(payment.getMessId());
@@ -0,0 +1,224 @@
+package com.app.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A few connected and authenticated SMTP sessions, reused across sends.
+ * Opening a connection costs a TCP connect, STARTTLS and AUTH, and providers throttle clients
+ * that do it for every mail, so a batch of mails goes out over one borrowed connection.
+ * Connection settings come from the spring.mail.* configured JavaMailSenderImpl.
+ */
+@Service
+public class SmtpTransportPool {
+
+    private final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    @Value("${mail.pool.size:2}")
+    private int size = 2;
+
+    // Providers drop idle sessions after a few minutes, close ours before that
+    @Value("${mail.pool.max-idle-ms:60000}")
+    private long maxIdleMs = 60_000;
+
+    // Some providers limit the mails per connection
+    @Value("${mail.pool.max-messages-per-connection:100}")
+    private int maxMessagesPerConnection = 100;
+
+    @Autowired
+    private JavaMailSenderImpl mailSender;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private long lastUsedMillis = System.currentTimeMillis();
+        private int messagesSent;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    // Most recently used first, so surplus connections go idle and get closed
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+
+    private Counter opened;
+    private Counter reused;
+    private Counter messages;
+    private DistributionSummary batchSize;
+    private Timer batchTime;
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(size, true);
+
+        opened = Counter.builder("mail.smtp.connections.opened").register(meterRegistry);
+        reused = Counter.builder("mail.smtp.connections.reused").register(meterRegistry);
+        messages = Counter.builder("mail.smtp.messages").register(meterRegistry);
+        batchSize = DistributionSummary.builder("mail.smtp.batch.size").register(meterRegistry);
+        batchTime = Timer.builder("mail.smtp.batch").register(meterRegistry);
+        Gauge.builder("mail.smtp.connections.idle", idle, BlockingDeque::size).register(meterRegistry);
+        Gauge.builder("mail.smtp.connections.active", this, pool -> size - pool.permits.availablePermits()).register(meterRegistry);
+    }
+
+    public MimeMessage toMimeMessage(SimpleMailMessage message) {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        message.copyTo(new MimeMailMessage(mimeMessage));
+        return mimeMessage;
+    }
+
+
+    /*
+        ############## Send a batch over one connection ##############
+     */
+
+    /**
+     * Send the messages in order over one pooled connection.
+     * A broken connection is replaced for the rest of the batch, so one bad mail does not fail the others.
+     * @return failures by index in the batch, empty if all were accepted
+     */
+    public Map<Integer, Exception> send(List<MimeMessage> batch) throws InterruptedException {
+        Map<Integer, Exception> failures = new HashMap<>();
+        long start = System.nanoTime();
+
+        permits.acquire();
+        PooledTransport pooled = null;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                MimeMessage message = batch.get(i);
+                try {
+                    if (pooled != null && pooled.messagesSent >= maxMessagesPerConnection) {
+                        close(pooled);
+                        pooled = null;
+                    }
+                    if (pooled == null) {
+                        pooled = borrow();
+                    }
+                    message.saveChanges();
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                    pooled.messagesSent++;
+                    messages.increment();
+                } catch (SendFailedException e) {
+                    // Rejected by the server (e.g. a bad address), the session is still fine
+                    failures.put(i, e);
+                } catch (MessagingException | RuntimeException e) {
+                    // Connection trouble, the next mail gets a fresh one
+                    failures.put(i, e);
+                    close(pooled);
+                    pooled = null;
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                giveBack(pooled);
+            }
+            permits.release();
+        }
+
+        batchSize.record(batch.size());
+        batchTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return failures;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isUsable(pooled) && pooled.transport.isConnected()) {
+                reused.increment();
+                return pooled;
+            }
+            close(pooled);
+        }
+
+        Transport transport = mailSender.getSession().getTransport(protocol());
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        opened.increment();
+        return new PooledTransport(transport);
+    }
+
+    // Same fallback as JavaMailSenderImpl: spring.mail.protocol, then mail.transport.protocol, then smtp
+    private String protocol() {
+        String protocol = mailSender.getProtocol();
+        if (protocol == null) {
+            protocol = mailSender.getSession().getProperty("mail.transport.protocol");
+        }
+        return protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL;
+    }
+
+    private void giveBack(PooledTransport pooled) {
+        pooled.lastUsedMillis = System.currentTimeMillis();
+        if (pooled.messagesSent >= maxMessagesPerConnection) {
+            close(pooled);
+        } else {
+            idle.offerFirst(pooled);
+        }
+    }
+
+    private boolean isUsable(PooledTransport pooled) {
+        return System.currentTimeMillis() - pooled.lastUsedMillis < maxIdleMs
+                && pooled.messagesSent < maxMessagesPerConnection;
+    }
+
+    private void close(PooledTransport pooled) {
+        if (pooled == null) {
+            return;
+        }
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Closing SMTP connection failed: {}", e.getMessage());
+        }
+    }
+
+
+    /*
+        ############## Close idle connections ##############
+     */
+    @Scheduled(fixedDelayString = "${mail.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        // Oldest are at the end of the deque
+        PooledTransport pooled;
+        while ((pooled = idle.peekLast()) != null && !isUsable(pooled)) {
+            if (idle.removeLastOccurrence(pooled)) {
+                close(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            close(pooled);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.app.service;
 
+import com.app.Utility.DtoMapper;
 import com.app.Utility.Helper;
 import com.app.dto.ApiResponse;
 import com.app.dto.PageableResponse;
@@ -10,7 +11,6 @@ import com.app.model.MessOwner;
 import com.app.model.User;
 import com.app.repository.MessOwnerRepository;
 import com.app.repository.UserRepository;
-import org.modelmapper.ModelMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +19,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -27,7 +32,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -42,10 +47,31 @@ public class UserService {
     private String imagePath;
 
     @Autowired
-    private ModelMapper mapper;
+    private MessOwnerRepository messOwnerRepository;
 
     @Autowired
-    private MessOwnerRepository messOwnerRepository;
+    private MessLocationIndex messLocationIndex;
+
+    @Autowired
+    private MessSearchIndex messSearchIndex;
+
+    @Autowired
+    private MembershipService membershipService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AccountLookupService accountLookupService;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+    @Autowired
+    private FileStorageLayout fileStorageLayout;
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
@@ -101,7 +127,9 @@ public class UserService {
                 .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + email));
 
         // Update the fields that are not null
+        boolean renamed = false;
         if (userDto.getName() != null && !userDto.getName().isBlank()){
+            renamed = !userDto.getName().equals(existingUser.getName());
             existingUser.setName(userDto.getName());
         }
 
@@ -112,6 +140,7 @@ public class UserService {
             existingUser.setGender(userDto.getGender());
         }
 
+        String previousImage = existingUser.getImageName();
         if(userDto.getImageName() != null && !userDto.getImageName().isBlank()){
             existingUser.setImageName(userDto.getImageName());
         }
@@ -129,26 +158,25 @@ public class UserService {
 
         // Save the updated user in the database
         User updatedUser = userRepository.save(existingUser);
+        accountLookupService.evictUser(email);
+        imageBlobService.replaceReferences(imagePath, Collections.singletonList(previousImage), Collections.singletonList(updatedUser.getImageName()));
+
+        if (renamed) {
+            membershipService.renameMember(email, updatedUser.getName());
+        }
 
         logger.info("User Updated Successfully: {}",existingUser.getName());
 
         // Map to DTO
-        return new ModelMapper().map(updatedUser, UserDto.class);
+        return DtoMapper.toUserDto(updatedUser);
     }
 
     /*
         ############# Get Single User by Email ##########
      */
     public UserDto getUserByEmail(String email){
-        User user = userRepository.findByEmail(email).orElseThrow(() -> new ResourceNotFoundException("User not present by this email"));
-        UserDto userDto = mapper.map(user, UserDto.class);
-        
-        // Ensure contact is never null in the DTO
-        if (userDto.getContact() == null || userDto.getContact().isEmpty()) {
-            userDto.setContact(user.getEmail());
-        }
-        
-        return userDto;
+        User user = accountLookupService.findUserByEmail(email).orElseThrow(() -> new ResourceNotFoundException("User not present by this email"));
+        return DtoMapper.toUserDto(user);
     }
 
     /*
@@ -157,21 +185,23 @@ public class UserService {
     public void deleteUserByEmail(String email) {
         User user= userRepository.findByEmail(email).orElseThrow(()-> new ResourceNotFoundException("User Not found"));
 
-        //Delete User Profile picture
-        String fullPath = imagePath + user.getImageName();
-
-        try{
-            Path path= Paths.get(fullPath);
-            Files.delete(path);
-        }catch (NoSuchFileException ignored){
-
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        //Delete User Profile picture, a shared content-addressed image is only released
+        if (user.getImageName() != null && !imageBlobService.release(imagePath, user.getImageName())) {
+            try{
+                Path path= fileStorageLayout.locate(imagePath, user.getImageName());
+                Files.delete(path);
+                imageByteCache.invalidate(path);
+            }catch (NoSuchFileException ignored){
+
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
         }
 
 
         //Delete User
         userRepository.delete(user);
+        accountLookupService.evictUser(email);
 
         logger.info("{} : Deleted Successfully",user.getName());
     }
@@ -189,7 +219,7 @@ public class UserService {
 
         Page<User> page = userRepository.findAll(pageable);// Retrieve all users
 
-        return Helper.getPageableResponse(page,UserDto.class); // Return the list of UserDto
+        return Helper.getPageableResponse(page, DtoMapper::toUserDto); // Return the list of UserDto
     }
 
     /*
@@ -198,14 +228,7 @@ public class UserService {
 
     public UserDto getUserById(String id){
         User user = userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("User not found"));
-        UserDto userDto = mapper.map(user, UserDto.class);
-        
-        // Ensure contact is never null in the DTO
-        if (userDto.getContact() == null || userDto.getContact().isEmpty()) {
-            userDto.setContact(user.getEmail());
-        }
-        
-        return userDto;
+        return DtoMapper.toUserDto(user);
     }
 
 
@@ -213,48 +236,90 @@ public class UserService {
         ########### Join a Mess ###########
      */
     public ApiResponse joinMess(String userEmail, String messEmail, UserDto userDto) {
-        // Fetch the mess by ID
-        MessOwner messOwner = messOwnerRepository.findByEmail(messEmail)
-                .orElseThrow(() -> new IllegalStateException("Mess not found"));
-
-        // Fetch the user by ID
-        User user = userRepository.findByEmail(userEmail)
+        // Fetch the user by email
+        User user = accountLookupService.findUserByEmail(userEmail)
                 .orElseThrow(() -> new IllegalStateException("User not found"));
 
-        // Check if user is already in the joinedUsers list
-        if (messOwner.getJoinedUsers().contains(userEmail)) {
+        Query messByEmail = new Query(Criteria.where("email").is(messEmail));
+        messByEmail.fields().include("email");
+        MessOwner mess = mongoTemplate.findOne(messByEmail, MessOwner.class);
+        if (mess == null) {
+            throw new IllegalStateException("Mess not found");
+        }
+
+        // The membership collection decides who is a member: claim it first, only one join per user can win
+        if (!membershipService.join(mess, user, userDto)) {
             throw new IllegalStateException("User has already joined this mess");
         }
 
-        // Check if mess has capacity
-        if (messOwner.getCapacity() <= 0) {
+        // Take a seat in one conditional update: only matches while the mess has capacity, so concurrent joins
+        // can never overbook. joinedUsers is only the copy API clients read, see MembershipService.syncJoinedUsers
+        Query seatAvailable = new Query(Criteria.where("_id").is(mess.getId()).and("capacity").gt(0));
+        Update takeSeat = new Update().inc("capacity", -1).addToSet("joinedUsers", userEmail);
+
+        MessOwner messOwner = mongoTemplate.findAndModify(seatAvailable, takeSeat,
+                FindAndModifyOptions.options().returnNew(true), MessOwner.class);
+
+        if (messOwner == null) {
+            // No seat left, back out the membership claimed above
+            membershipService.leave(mess.getId(), userEmail);
             throw new IllegalStateException("Mess capacity is full");
         }
 
-        // Add the user ID to the joinedUsers list
-        messOwner.getJoinedUsers().add(userEmail);
+        messLocationIndex.upsert(messOwner);
+        messSearchIndex.upsert(messOwner);
 
-        // Decrement the mess's capacity
-        messOwner.setCapacity(messOwner.getCapacity() - 1);
+        //Update User Join Details, $set only so a retried join writes the same values again
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("email").is(userEmail)),
+                new Update()
+                        .set("messId", messOwner.getId())
+                        .set("messName", messOwner.getMessName())
+                        .set("joinDate", userDto.getJoinDate())
+                        .set("subscriptionPlan", userDto.getSubscriptionPlan())
+                        .set("foodType", userDto.getFoodType()),
+                User.class);
 
+        accountLookupService.evictUser(userEmail);
+        accountLookupService.evictMessOwner(messEmail);
 
-        //Update User Join Details
-        user.setMessName(messOwner.getMessName());
-        user.setJoinDate(userDto.getJoinDate());
-        user.setSubscriptionPlan(userDto.getSubscriptionPlan());
-        user.setFoodType(userDto.getFoodType());
+        logger.info("The {} User is Join {} Mess", user.getName(), messOwner.getMessName());
 
+        return new ApiResponse(true, "User successfully joined the mess");
+    }
 
-        // Save the updated messOwner to the database
-        messOwnerRepository.save(messOwner);
+    /*
+        ########### Leave a Mess ###########
+     */
+    public ApiResponse leaveMess(String userEmail, String messEmail) {
+        MessOwner messOwner = messOwnerRepository.findByEmail(messEmail)
+                .orElseThrow(() -> new IllegalStateException("Mess not found"));
 
-        // Optionally update the user document with the messId
-        user.setMessId(messOwner.getId());
-        userRepository.save(user);
+        if (!membershipService.leave(messOwner.getId(), userEmail)) {
+            throw new IllegalStateException("User is not a member of this mess");
+        }
 
-        logger.info("The {} User is Join {} Mess", user.getName(), messOwner.getMessName());
+        // Give the seat back, leave() above only succeeds once per membership so this runs once too
+        MessOwner savedMess = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(messOwner.getId())),
+                new Update().pull("joinedUsers", userEmail).inc("capacity", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                MessOwner.class);
+        messLocationIndex.upsert(savedMess);
+        messSearchIndex.upsert(savedMess);
 
-        return new ApiResponse(true, "User successfully joined the mess");
+        // Clear the user's join details
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("email").is(userEmail).and("messId").is(messOwner.getId())),
+                new Update().unset("messId").unset("messName").unset("joinDate").unset("subscriptionPlan").unset("foodType"),
+                User.class);
+
+        accountLookupService.evictUser(userEmail);
+        accountLookupService.evictMessOwner(messEmail);
+
+        logger.info("The {} User left {} Mess", userEmail, messOwner.getMessName());
+
+        return new ApiResponse(true, "User successfully left the mess");
     }
 
 
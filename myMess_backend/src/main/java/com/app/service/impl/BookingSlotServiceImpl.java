@@ -1,11 +1,11 @@
 package com.app.service.impl;
 
+import com.app.Utility.DtoMapper;
 import com.app.dto.BookingSlotDto;
 import com.app.model.BookingSlot;
 import com.app.repository.BookingSlotRepository;
 import com.app.service.BookingSlotService;
 import com.app.service.NotificationService;
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -20,9 +20,6 @@ public class BookingSlotServiceImpl implements BookingSlotService {
     @Autowired
     private BookingSlotRepository bookingSlotRepository;
     
-    @Autowired
-    private ModelMapper modelMapper;
-    
     @Autowired
     private NotificationService notificationService;
 
@@ -35,7 +32,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         bookingSlotDto.setUpdatedAt(LocalDateTime.now());
         
         // Convert DTO to entity
-        BookingSlot bookingSlot = modelMapper.map(bookingSlotDto, BookingSlot.class);
+        BookingSlot bookingSlot = DtoMapper.toBookingSlot(bookingSlotDto);
         
         // Save to database
         BookingSlot savedBookingSlot = bookingSlotRepository.save(bookingSlot);
@@ -57,7 +54,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         }
         
         // Convert saved entity back to DTO and return
-        return modelMapper.map(savedBookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(savedBookingSlot);
     }
 
     @Override
@@ -67,7 +64,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
                 .orElseThrow(() -> new RuntimeException("Booking slot not found with id: " + id));
         
         // Convert entity to DTO and return
-        return modelMapper.map(bookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(bookingSlot);
     }
 
     @Override
@@ -77,7 +74,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -88,7 +85,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -99,7 +96,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -110,7 +107,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -121,7 +118,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -132,7 +129,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -143,7 +140,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         
         // Convert entities to DTOs and return
         return bookingSlots.stream()
-                .map(bookingSlot -> modelMapper.map(bookingSlot, BookingSlotDto.class))
+                .map(bookingSlot -> DtoMapper.toBookingSlotDto(bookingSlot))
                 .collect(Collectors.toList());
     }
 
@@ -178,7 +175,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         }
         
         // Convert saved entity back to DTO and return
-        return modelMapper.map(savedBookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(savedBookingSlot);
     }
 
     @Override
@@ -225,7 +222,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         }
         
         // Convert saved entity back to DTO and return
-        return modelMapper.map(savedBookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(savedBookingSlot);
     }
 
     @Override
@@ -274,7 +271,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         }
         
         // Convert saved entity back to DTO and return
-        return modelMapper.map(savedBookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(savedBookingSlot);
     }
 
     @Override
@@ -303,7 +300,7 @@ public class BookingSlotServiceImpl implements BookingSlotService {
         BookingSlot savedBookingSlot = bookingSlotRepository.save(bookingSlot);
         
         // Convert saved entity back to DTO and return
-        return modelMapper.map(savedBookingSlot, BookingSlotDto.class);
+        return DtoMapper.toBookingSlotDto(savedBookingSlot);
     }
 
     @Override
@@ -1,21 +1,95 @@
 package com.app.service.impl;
 
+import com.app.dto.FileUploadResult;
 import com.app.service.FileService;
+import com.app.service.FileStorageLayout;
+import com.app.service.ImageBlobService;
+import com.app.service.ImageByteCache;
+import com.app.service.ImageDirectoryIndex;
+import com.app.service.ImageVariantService;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class FileServiceImpl implements FileService {
 
     private Logger logger= LoggerFactory.getLogger(FileServiceImpl.class);
 
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageBlobService imageBlobService;
+
+    @Autowired
+    private ImageByteCache imageByteCache;
+
+    @Autowired
+    private FileStorageLayout fileStorageLayout;
+
+    @Autowired
+    private ImageDirectoryIndex imageDirectoryIndex;
+
+    @Value("${file.storage.content-addressed:false}")
+    private boolean contentAddressed;
+
+    private final AtomicInteger uploadThreadCount = new AtomicInteger();
+
+    // Bounded pool for multi-file uploads, when it is saturated the request thread writes the file itself
+    private final ExecutorService uploadExecutor = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(64),
+            runnable -> {
+                Thread thread = new Thread(runnable, "file-upload-" + uploadThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    // Request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
     @Override
     public String fileUpload(MultipartFile file, String path) throws IOException {
 
@@ -27,32 +101,259 @@ public class FileServiceImpl implements FileService {
         String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
         logger.info("The Extension of File is: {}",extension);
 
+        //Content-addressed mode: the name is the hash of the bytes, identical uploads share one file
+        if (contentAddressed) {
+            String storedName = imageBlobService.store(file, path, extension);
+            imageDirectoryIndex.added(Paths.get(path), storedName);
+            imageVariantService.generateAsync(fileStorageLayout.locate(path, storedName));
+            return storedName;
+        }
+
         //Generate Random file name
         String randomName= UUID.randomUUID().toString();
 
         //Combine the random File name with the original Extension
         String finalFileName=randomName+extension;
 
-        //Get the Full Path
-        String fullPathWithFileName = path + finalFileName;
+        //Get the Full Path, in its shard folder when the storage is sharded (folders are created)
+        Path target = fileStorageLayout.newFile(path, finalFileName);
+
+        //Save the upload to our Path, moves the multipart temp file when it is already on disk
+        file.transferTo(target.toFile());
+        imageDirectoryIndex.added(Paths.get(path), finalFileName);
+
+        //Build the resized copies in the background
+        imageVariantService.generateAsync(target);
 
-        //Create the Folder by the Given Path if the folder is not exist
-        File folder=new File(path);
-        if(!folder.exists()){
-            folder.mkdirs();
+        return finalFileName;
+    }
+
+    /*
+        Commit a file that is already on disk, e.g. an assembled chunked upload.
+        Same naming as a multipart upload, the source file is moved or consumed.
+     */
+    @Override
+    public String fileUpload(Path source, String originalFilename, String path) throws IOException {
+        String extension = originalFilename.substring(originalFilename.lastIndexOf("."));
+
+        if (contentAddressed) {
+            String storedName;
+            try (InputStream content = Files.newInputStream(source)) {
+                storedName = imageBlobService.store(content, path, extension);
+            }
+            Files.deleteIfExists(source);
+            imageDirectoryIndex.added(Paths.get(path), storedName);
+            imageVariantService.generateAsync(fileStorageLayout.locate(path, storedName));
+            return storedName;
         }
 
-        //Save the inputStream File date to our Path
-        Files.copy(file.getInputStream(), Paths.get(fullPathWithFileName));
+        String finalFileName = UUID.randomUUID() + extension;
+        Path target = fileStorageLayout.newFile(path, finalFileName);
+        Files.move(source, target);
+        // A move keeps the staging file's age, which could already be past the orphan sweeper's grace time
+        Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+        imageDirectoryIndex.added(Paths.get(path), finalFileName);
+        imageVariantService.generateAsync(target);
 
         return finalFileName;
     }
 
+    /*
+        Store several uploads at once on the bounded upload pool.
+        Every file gets its own result, a bad file does not fail the others.
+     */
     @Override
-    public InputStream serveFile(String path, String imageName) throws FileNotFoundException {
-        String fullPath=path+imageName;
+    public List<FileUploadResult> fileUploadAll(List<MultipartFile> files, String path) {
+        List<Future<String>> uploads = new ArrayList<>();
+        for (MultipartFile file : files) {
+            uploads.add(uploadExecutor.submit(() -> fileUpload(file, path)));
+        }
 
-        InputStream inputStream=new FileInputStream(fullPath);
-        return inputStream;
+        List<FileUploadResult> results = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            String originalName = files.get(i).getOriginalFilename();
+            try {
+                String imageName = uploads.get(i).get();
+                results.add(FileUploadResult.builder()
+                        .originalName(originalName)
+                        .imageName(imageName)
+                        .success(true)
+                        .message("Uploaded")
+                        .build());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(failed(originalName, "Upload interrupted"));
+            } catch (ExecutionException e) {
+                logger.warn("Upload of {} failed: {}", originalName, e.getCause().toString());
+                results.add(failed(originalName, "Could not store file"));
+            }
+        }
+        return results;
+    }
+
+    private FileUploadResult failed(String originalName, String message) {
+        return FileUploadResult.builder().originalName(originalName).success(false).message(message).build();
+    }
+
+    @PreDestroy
+    public void shutdownUploads() {
+        uploadExecutor.shutdown();
+    }
+
+    @Override
+    public Path resolveFile(String path, String imageName) throws FileNotFoundException {
+        if (imageName == null || imageName.isEmpty()) {
+            throw new FileNotFoundException("No image name");
+        }
+
+        // Reject names that walk out of the folder, e.g. ../../application.properties
+        if (imageName.contains("/") || imageName.contains("\\") || imageName.startsWith(".")) {
+            throw new FileNotFoundException(imageName);
+        }
+
+        Path file = fileStorageLayout.locate(path, imageName);
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException(imageName);
+        }
+        return file;
+    }
+
+    /*
+        Write the file (or the requested byte range) straight from disk to the socket.
+        On Tomcat the transfer is handed to the connector's sendfile support, elsewhere
+        FileChannel.transferTo is used, so the bytes are never copied through the heap.
+     */
+    @Override
+    public void serveFile(String path, String imageName, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Uploads get a fresh UUID name, so the bytes behind a name never change
+        writeFile(resolveFile(path, imageName), IMMUTABLE, request, response);
+    }
+
+    /*
+        Serve a resized variant (thumb, small, medium) of the image.
+        While the variant is still being built the original is sent, but only cached until
+        revalidation so the client switches to the variant once it exists.
+     */
+    @Override
+    public void serveFile(String path, String imageName, String size, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path original = resolveFile(path, imageName);
+        if (!ImageVariantService.isSupportedSize(size)) {
+            writeFile(original, IMMUTABLE, request, response);
+            return;
+        }
+
+        Optional<Path> variant = imageVariantService.findVariant(original, size);
+        if (variant.isPresent()) {
+            writeFile(variant.get(), IMMUTABLE, request, response);
+        } else {
+            writeFile(original, CacheControl.noCache(), request, response);
+        }
+    }
+
+    private void writeFile(Path file, CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Small hot images come from memory, everything else from disk
+        ImageByteCache.Entry cached = imageByteCache.get(file);
+        long length = cached != null ? cached.length() : Files.size(file);
+        long lastModified = cached != null ? cached.lastModified() : Files.getLastModifiedTime(file).toMillis();
+
+        String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            // 304 with ETag and Last-Modified already set
+            return;
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+
+        HttpRange range = rangeMatches(request, etag, lastModified) ? singleRange(request.getHeader(HttpHeaders.RANGE)) : null;
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+
+        if (count <= 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return;
+        }
+
+        if (cached != null) {
+            // duplicate() so concurrent requests do not share a buffer position
+            ByteBuffer slice = cached.content().duplicate();
+            slice.position((int) start).limit((int) (end + 1));
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            while (slice.hasRemaining()) {
+                out.write(slice);
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat sends the file itself after the controller returns
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long sent = channel.transferTo(position, end + 1 - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+
+    /*
+        If-Range: the range only applies while the client's copy is still current
+     */
+    private boolean rangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /*
+        The single range asked for, or null to send the whole file.
+        Malformed and multi-range headers are ignored, which HTTP allows.
+     */
+    private HttpRange singleRange(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
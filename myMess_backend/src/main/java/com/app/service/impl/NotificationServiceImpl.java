@@ -5,6 +5,7 @@ import com.app.model.Notification;
 import com.app.model.User;
 import com.app.repository.NotificationRepository;
 import com.app.repository.UserRepository;
+import com.app.service.AccountLookupService;
 import com.app.service.NotificationService;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,9 @@ public class NotificationServiceImpl implements NotificationService {
     
     @Autowired
     private UserRepository userRepository;
+
+    @Autowired
+    private AccountLookupService accountLookupService;
     
     @Autowired
     private ModelMapper modelMapper;
@@ -45,7 +49,7 @@ public class NotificationServiceImpl implements NotificationService {
             if (senderEmail.equals("system@myMessApp.com")) {
                 notification.setSenderName("MyMess System");
             } else {
-                Optional<User> senderOpt = userRepository.findByEmail(senderEmail);
+                Optional<User> senderOpt = accountLookupService.findUserByEmail(senderEmail);
                 senderOpt.ifPresent(sender -> notification.setSenderName(sender.getName()));
             }
         }
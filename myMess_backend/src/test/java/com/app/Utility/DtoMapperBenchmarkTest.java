@@ -0,0 +1,116 @@
+package com.app.Utility;
+
+import com.app.dto.MessOwnerDto;
+import com.app.dto.UserDto;
+import com.app.model.MessOwner;
+import com.app.model.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.modelmapper.ModelMapper;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cost of mapping 1k users and 1k messes to DTOs: a new ModelMapper per element (how list responses
+ * were mapped before), one shared ModelMapper, and the hand-written DtoMapper.
+ * Only runs on request: mvn test -Dtest=DtoMapperBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DtoMapperBenchmarkTest {
+
+    private static final int ENTITIES = 1_000;
+    private static final int WARMUP = 20;
+    private static final int ROUNDS = Integer.getInteger("benchmark.rounds", 100);
+
+    @Test
+    void mappingCostPerThousandEntities() {
+        List<User> users = new ArrayList<>(ENTITIES);
+        List<MessOwner> messes = new ArrayList<>(ENTITIES);
+        for (int i = 0; i < ENTITIES; i++) {
+            users.add(user(i));
+            messes.add(mess(i));
+        }
+
+        ModelMapper shared = new ModelMapper();
+
+        report("users", users,
+                user -> new ModelMapper().map(user, UserDto.class),
+                user -> shared.map(user, UserDto.class),
+                DtoMapper::toUserDto);
+        report("mess", messes,
+                mess -> new ModelMapper().map(mess, MessOwnerDto.class),
+                mess -> shared.map(mess, MessOwnerDto.class),
+                DtoMapper::toMessOwnerDto);
+    }
+
+    private static <T> void report(String label, List<T> entities, Function<T, ?> perElement, Function<T, ?> shared, Function<T, ?> handWritten) {
+        double perElementMicros = run(entities, perElement);
+        double sharedMicros = run(entities, shared);
+        double handWrittenMicros = run(entities, handWritten);
+
+        System.out.printf("1k %s  new ModelMapper per element: %.0f us, shared ModelMapper: %.0f us, DtoMapper: %.0f us%n",
+                label, perElementMicros, sharedMicros, handWrittenMicros);
+        assertTrue(handWrittenMicros > 0);
+    }
+
+    // Microseconds to map the whole list once, after a warm-up so the JIT has compiled every path
+    private static <T> double run(List<T> entities, Function<T, ?> mapper) {
+        int mapped = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            mapped += entities.stream().map(mapper).toList().size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            mapped += entities.stream().map(mapper).toList().size();
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / ROUNDS;
+
+        assertTrue(mapped == (WARMUP + ROUNDS) * entities.size());
+        return micros;
+    }
+
+    private static User user(int i) {
+        return User.builder()
+                .id("user-" + i)
+                .name("User " + i)
+                .email("user" + i + "@test.local")
+                .phoneNumber("98765" + String.format("%05d", i))
+                .gender(i % 2 == 0 ? "Male" : "Female")
+                .address("Street " + i)
+                .imageName("user-" + i + ".jpg")
+                .currentDate(LocalDate.of(2024, 1, 1))
+                .messId("mess-" + (i % 50))
+                .messName("Mess " + (i % 50))
+                .joinDate(LocalDate.of(2024, 2, 1))
+                .subscriptionPlan("MONTHLY")
+                .foodType("Veg")
+                .build();
+    }
+
+    private static MessOwner mess(int i) {
+        MessOwner mess = new MessOwner();
+        mess.setId("mess-" + i);
+        mess.setName("Owner " + i);
+        mess.setEmail("mess" + i + "@test.local");
+        mess.setMessName("Mess " + i);
+        mess.setMessAddress("Street " + i);
+        mess.setMessType("Veg");
+        mess.setCapacity(50);
+        mess.setPricePerMeal(80);
+        mess.setCurrentDate(LocalDate.of(2024, 1, 1));
+        mess.setImageName("mess-" + i + ".jpg");
+        mess.setMessImages(List.of("a-" + i + ".jpg", "b-" + i + ".jpg"));
+        mess.setJoinedUsers(new ArrayList<>(List.of("user-" + i)));
+        mess.setLatitude(18.52);
+        mess.setLongitude(73.85);
+        mess.setAverageRating(4.2);
+        mess.setFeedbackCount(12);
+        return mess;
+    }
+}
@@ -0,0 +1,38 @@
+package com.app.jwt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tokens validated per second on one core (one thread), after a warm-up so the JIT has compiled the parser.
+ * Only runs on request: mvn test -Dtest=JwtUtilBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class JwtUtilBenchmarkTest {
+
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200_000);
+
+    @Test
+    void tokensValidatedPerSecond() {
+        JwtUtil jwtUtil = new JwtUtil();
+        String token = jwtUtil.generateToken("benchmark@mymess.app");
+
+        int valid = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            valid += jwtUtil.validateToken(token, "benchmark@mymess.app") ? 1 : 0;
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            valid += jwtUtil.validateToken(token, "benchmark@mymess.app") ? 1 : 0;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d validations in %.2f s: %.0f tokens/s on one core, %.2f us each%n",
+                ITERATIONS, seconds, ITERATIONS / seconds, seconds * 1e6 / ITERATIONS);
+        assertTrue(valid == WARMUP + ITERATIONS);
+    }
+}
@@ -0,0 +1,82 @@
+package com.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Create and lookup latency of the flat and the sharded layout with many files in one folder.
+ * Slow and disk bound, so it only runs on request: mvn test -Dtest=FileStorageLayoutBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class FileStorageLayoutBenchmarkTest {
+
+    private static final int FILES = Integer.getInteger("benchmark.files", 100_000);
+    private static final int LOOKUPS = 20_000;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void flatVersusSharded() throws IOException {
+        List<String> names = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            names.add(UUID.randomUUID() + ".jpg");
+        }
+
+        Result flat = run(root.resolve("flat"), names, false);
+        Result sharded = run(root.resolve("sharded"), names, true);
+
+        System.out.printf("%d files  flat: create %.1f us, lookup p50 %.1f us, p99 %.1f us%n",
+                FILES, flat.createMicros, flat.lookupP50, flat.lookupP99);
+        System.out.printf("%d files  sharded: create %.1f us, lookup p50 %.1f us, p99 %.1f us%n",
+                FILES, sharded.createMicros, sharded.lookupP50, sharded.lookupP99);
+        assertTrue(flat.found == LOOKUPS && sharded.found == LOOKUPS);
+    }
+
+    private record Result(double createMicros, double lookupP50, double lookupP99, int found) {
+    }
+
+    private Result run(Path folder, List<String> names, boolean sharded) throws IOException {
+        Files.createDirectories(folder);
+
+        long start = System.nanoTime();
+        for (String name : names) {
+            Path file = sharded ? FileStorageLayout.shardedPath(folder, name) : folder.resolve(name);
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+        }
+        double createMicros = (System.nanoTime() - start) / 1000.0 / names.size();
+
+        // Random lookups, the way image requests arrive
+        Random random = new Random(42);
+        long[] lookups = new long[LOOKUPS];
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            long lookupStart = System.nanoTime();
+            Path file = sharded ? FileStorageLayout.shardedPath(folder, name) : folder.resolve(name);
+            if (Files.isRegularFile(file)) {
+                found++;
+            }
+            lookups[i] = System.nanoTime() - lookupStart;
+        }
+
+        Arrays.sort(lookups);
+        return new Result(createMicros,
+                lookups[LOOKUPS / 2] / 1000.0,
+                lookups[LOOKUPS * 99 / 100] / 1000.0,
+                found);
+    }
+}
@@ -0,0 +1,132 @@
+package com.app.service;
+
+import com.app.dto.UserDto;
+import com.app.model.MessMembership;
+import com.app.model.MessOwner;
+import com.app.model.User;
+import com.app.repository.MessOwnerRepository;
+import com.app.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many users joining one mess at once must never take more seats than its capacity.
+ * Needs a running MongoDB, so it only runs on request: mvn test -Dtest=JoinMessConcurrencyTest -Dmongo.tests=true
+ * It works in its own database and image folders, with the orphan sweeper off, so the dev data is never touched.
+ */
+@SpringBootTest(properties = {
+		"spring.data.mongodb.database=mymess_test",
+		"user.profile.picture=target/test-images/users/",
+		"mess.profile.picture=target/test-images/mess/",
+		"file.upload.staging=target/test-images/uploads/",
+		"file.orphan.enabled=false"})
+@EnabledIfSystemProperty(named = "mongo.tests", matches = "true")
+class JoinMessConcurrencyTest {
+
+	private static final int CAPACITY = 50;
+	private static final int USERS = 300;
+	private static final int THREADS = 32;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private MessOwnerRepository messOwnerRepository;
+
+	@Autowired
+	private MongoTemplate mongoTemplate;
+
+	private final String runId = UUID.randomUUID().toString();
+	private final List<String> userEmails = new ArrayList<>();
+	private MessOwner mess;
+
+	@BeforeEach
+	void setUp() {
+		mess = new MessOwner();
+		mess.setEmail("stress-mess-" + runId + "@test.local");
+		mess.setMessName("Stress Mess");
+		mess.setCapacity(CAPACITY);
+		mess = messOwnerRepository.save(mess);
+
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			String email = "stress-user-" + i + "-" + runId + "@test.local";
+			userEmails.add(email);
+			users.add(User.builder().email(email).name("user" + i).build());
+		}
+		userRepository.saveAll(users);
+	}
+
+	@AfterEach
+	void tearDown() {
+		mongoTemplate.remove(new Query(Criteria.where("messId").is(mess.getId())), MessMembership.class);
+		mongoTemplate.remove(new Query(Criteria.where("email").in(userEmails)), User.class);
+		messOwnerRepository.deleteById(mess.getId());
+	}
+
+	@Test
+	void parallelJoinsNeverExceedCapacity() throws Exception {
+		AtomicInteger joined = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		List<Future<?>> futures = new ArrayList<>();
+		// Every user joins twice to also exercise repeated joins
+		for (int round = 0; round < 2; round++) {
+			for (String email : userEmails) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					UserDto plan = UserDto.builder().joinDate(LocalDate.now()).subscriptionPlan("MONTHLY").build();
+					try {
+						userService.joinMess(email, mess.getEmail(), plan);
+						joined.incrementAndGet();
+					} catch (IllegalStateException e) {
+						rejected.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+		}
+
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		MessOwner after = messOwnerRepository.findById(mess.getId()).orElseThrow();
+		long members = mongoTemplate.count(new Query(Criteria.where("messId").is(mess.getId()).and("active").is(true)), MessMembership.class);
+
+		assertEquals(CAPACITY, joined.get());
+		assertEquals(2 * USERS - CAPACITY, rejected.get());
+		assertEquals(0, after.getCapacity());
+		assertEquals(CAPACITY, after.getJoinedUsers().size());
+		assertEquals(CAPACITY, members);
+		assertTrue(after.getJoinedUsers().stream().distinct().count() == after.getJoinedUsers().size());
+	}
+}
@@ -0,0 +1,124 @@
+package com.app.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+	Minimal SMTP server on a free local port, stands in for the mail provider in tests.
+	Accepts every mail, or answers 451 to the next failNext(n) mails / to all mails after rejectAll().
+ */
+class LocalSmtpServer implements AutoCloseable {
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final List<String> messages = new CopyOnWriteArrayList<>();
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private final AtomicInteger connections = new AtomicInteger();
+	private volatile boolean rejectAll;
+
+	LocalSmtpServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		executor.execute(this::acceptLoop);
+	}
+
+	int port() {
+		return serverSocket.getLocalPort();
+	}
+
+	List<String> messages() {
+		return messages;
+	}
+
+	int connections() {
+		return connections.get();
+	}
+
+	void failNext(int count) {
+		failuresLeft.set(count);
+	}
+
+	void rejectAll() {
+		rejectAll = true;
+	}
+
+	boolean awaitMessages(int count, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		while (messages.size() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	private void acceptLoop() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				connections.incrementAndGet();
+				executor.execute(() -> handle(socket));
+			} catch (IOException e) {
+				return;
+			}
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (socket;
+			 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			 PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+			reply(out, "220 localhost ESMTP test");
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+				switch (command) {
+					case "EHLO", "HELO" -> reply(out, "250 localhost");
+					case "DATA" -> {
+						reply(out, "354 End data with <CR><LF>.<CR><LF>");
+						StringBuilder data = new StringBuilder();
+						while ((line = in.readLine()) != null && !line.equals(".")) {
+							data.append(line).append('\n');
+						}
+						if (rejectAll || failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+							reply(out, "451 Try again later");
+						} else {
+							messages.add(data.toString());
+							reply(out, "250 OK");
+						}
+					}
+					case "QUIT" -> {
+						reply(out, "221 Bye");
+						return;
+					}
+					default -> reply(out, "250 OK");
+				}
+			}
+		} catch (IOException e) {
+			// Client went away
+		}
+	}
+
+	private static void reply(PrintWriter out, String line) {
+		out.print(line + "\r\n");
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,158 @@
+package com.app.service;
+
+import com.app.model.MailDeadLetter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+
+/*
+	Mail queue against a local SMTP stand-in, no Spring context or real mail provider needed
+ */
+class MailDispatchServiceTest {
+
+	private LocalSmtpServer smtpServer;
+	private MongoTemplate mongoTemplate;
+	private SimpleMeterRegistry meterRegistry;
+	private SmtpTransportPool smtpTransportPool;
+	private MailDispatchService mailDispatchService;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		smtpServer = new LocalSmtpServer();
+
+		JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+		mailSender.setHost("localhost");
+		mailSender.setPort(smtpServer.port());
+		Properties properties = new Properties();
+		properties.put("mail.smtp.connectiontimeout", "2000");
+		properties.put("mail.smtp.timeout", "2000");
+		mailSender.setJavaMailProperties(properties);
+
+		mongoTemplate = mock(MongoTemplate.class);
+		meterRegistry = new SimpleMeterRegistry();
+
+		smtpTransportPool = new SmtpTransportPool();
+		ReflectionTestUtils.setField(smtpTransportPool, "mailSender", mailSender);
+		ReflectionTestUtils.setField(smtpTransportPool, "meterRegistry", meterRegistry);
+		smtpTransportPool.init();
+
+		mailDispatchService = new MailDispatchService();
+		ReflectionTestUtils.setField(mailDispatchService, "smtpTransportPool", smtpTransportPool);
+		ReflectionTestUtils.setField(mailDispatchService, "mongoTemplate", mongoTemplate);
+		ReflectionTestUtils.setField(mailDispatchService, "meterRegistry", meterRegistry);
+		ReflectionTestUtils.setField(mailDispatchService, "maxAttempts", 3);
+		ReflectionTestUtils.setField(mailDispatchService, "initialBackoffMs", 20L);
+		mailDispatchService.init();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		mailDispatchService.shutdown();
+		smtpTransportPool.shutdown();
+		smtpServer.close();
+	}
+
+	@Test
+	void queuedMailsAreDelivered() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			assertTrue(mailDispatchService.enqueue(otpMail("user" + i + "@test.local")));
+		}
+
+		assertTrue(smtpServer.awaitMessages(50, 10_000));
+		// Counted once send() returns, a moment after the server stored the mail
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (meterRegistry.counter("mail.sent").count() < 50 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(50.0, meterRegistry.counter("mail.sent").count());
+		assertEquals(50, meterRegistry.timer("mail.delivery.latency").count());
+		verify(mongoTemplate, never()).insert(any(MailDeadLetter.class));
+	}
+
+	@Test
+	void connectionsAreReusedAcrossBatches() throws Exception {
+		for (int i = 0; i < 50; i++) {
+			mailDispatchService.enqueue(otpMail("user" + i + "@test.local"));
+		}
+		assertTrue(smtpServer.awaitMessages(50, 10_000));
+
+		mailDispatchService.enqueue(otpMail("later@test.local"));
+		assertTrue(smtpServer.awaitMessages(51, 10_000));
+
+		// At most one connection per pool slot, never one per mail
+		assertTrue(smtpServer.connections() <= 2, "connections: " + smtpServer.connections());
+		assertEquals((double) smtpServer.connections(), meterRegistry.counter("mail.smtp.connections.opened").count());
+		assertTrue(meterRegistry.counter("mail.smtp.connections.reused").count() > 0);
+	}
+
+	@Test
+	void failedSendIsRetriedWithBackoff() throws Exception {
+		smtpServer.failNext(2);
+
+		mailDispatchService.enqueue(otpMail("retry@test.local"));
+
+		assertTrue(smtpServer.awaitMessages(1, 10_000));
+		assertEquals(2.0, meterRegistry.counter("mail.retried").count());
+		verify(mongoTemplate, never()).insert(any(MailDeadLetter.class));
+	}
+
+	@Test
+	void mailIsDeadLetteredAfterLastAttempt() {
+		smtpServer.rejectAll();
+
+		mailDispatchService.enqueue(otpMail("dead@test.local"));
+
+		ArgumentCaptor<MailDeadLetter> deadLetter = ArgumentCaptor.forClass(MailDeadLetter.class);
+		verify(mongoTemplate, timeout(10_000)).insert(deadLetter.capture());
+		assertEquals("dead@test.local", deadLetter.getValue().getTo());
+		assertEquals(3, deadLetter.getValue().getAttempts());
+		assertEquals(1.0, meterRegistry.counter("mail.dead_letters").count());
+		assertEquals(0, mailDispatchService.queueDepth());
+	}
+
+	@Test
+	void retryWaitingAtShutdownIsSentOrDeadLettered() throws Exception {
+		smtpServer.rejectAll();
+		// Far longer than the test, the retry is still waiting when the service stops
+		ReflectionTestUtils.setField(mailDispatchService, "initialBackoffMs", 60_000L);
+
+		mailDispatchService.enqueue(otpMail("stopping@test.local"));
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (meterRegistry.counter("mail.retried").count() < 1 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, mailDispatchService.queueDepth());
+
+		mailDispatchService.shutdown();
+
+		ArgumentCaptor<MailDeadLetter> deadLetter = ArgumentCaptor.forClass(MailDeadLetter.class);
+		verify(mongoTemplate).insert(deadLetter.capture());
+		assertEquals("stopping@test.local", deadLetter.getValue().getTo());
+		assertEquals(0, mailDispatchService.queueDepth());
+	}
+
+	private static SimpleMailMessage otpMail(String to) {
+		SimpleMailMessage message = new SimpleMailMessage();
+		message.setFrom("noreply@test.local");
+		message.setTo(to);
+		message.setSubject("Your OTP Code");
+		message.setText("Your OTP is: 1234");
+		return message;
+	}
+}
@@ -0,0 +1,151 @@
+package com.app.service;
+
+import com.app.model.MessOwner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.query.NearQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Latency of /mess/getNearby against collection size: the old full scan with Haversine in Java
+ * versus the $geoNear query on the 2dsphere index. Runs against the configured MongoDB in its own
+ * collection, so it only runs on request: mvn test -Dtest=NearbyMessQueryBenchmarkTest -Dbenchmark=true
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class NearbyMessQueryBenchmarkTest {
+
+    private static final String COLLECTION = "mess_geo_benchmark";
+    private static final int[] SIZES = {1_000, 10_000, 50_000};
+    private static final int QUERIES = Integer.getInteger("benchmark.queries", 200);
+    private static final double RADIUS_KM = 5.0;
+
+    // Spread over roughly a 50 km city, the way the app's messes are
+    private static final double CENTER_LAT = 18.52;
+    private static final double CENTER_LNG = 73.85;
+    private static final double SPREAD = 0.45;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(COLLECTION);
+    }
+
+    @Test
+    void fullScanVersusGeoNear() {
+        Random random = new Random(42);
+        mongoTemplate.dropCollection(COLLECTION);
+        mongoTemplate.indexOps(COLLECTION)
+                .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+
+        int stored = 0;
+        for (int size : SIZES) {
+            List<MessOwner> batch = new ArrayList<>(size - stored);
+            for (; stored < size; stored++) {
+                batch.add(mess(stored, random));
+            }
+            mongoTemplate.insert(batch, COLLECTION);
+
+            // Same query points for both, warmed up once so the first connection does not count
+            double[][] points = new double[QUERIES][];
+            for (int i = 0; i < QUERIES; i++) {
+                points[i] = point(random);
+            }
+            fullScan(points[0][0], points[0][1]);
+            geoNear(points[0][0], points[0][1]);
+
+            long[] scanNanos = new long[QUERIES];
+            long[] geoNanos = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                long start = System.nanoTime();
+                int scanned = fullScan(points[i][0], points[i][1]);
+                scanNanos[i] = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                int found = geoNear(points[i][0], points[i][1]);
+                geoNanos[i] = System.nanoTime() - start;
+
+                // The two may only disagree on a mess right at the edge of the radius
+                assertTrue(Math.abs(scanned - found) <= 1, scanned + " vs " + found);
+            }
+
+            System.out.printf("%6d mess  full scan: p50 %.2f ms, p99 %.2f ms  $geoNear: p50 %.2f ms, p99 %.2f ms%n",
+                    size, percentile(scanNanos, 50), percentile(scanNanos, 99),
+                    percentile(geoNanos, 50), percentile(geoNanos, 99));
+        }
+    }
+
+    // What /mess/getNearby did before: load every mess and filter in Java
+    private int fullScan(double latitude, double longitude) {
+        List<MessOwner> all = mongoTemplate.findAll(MessOwner.class, COLLECTION);
+        List<Double> distances = new ArrayList<>();
+        for (MessOwner mess : all) {
+            double distance = haversine(latitude, longitude, mess.getLatitude(), mess.getLongitude());
+            if (distance <= RADIUS_KM) {
+                distances.add(distance);
+            }
+        }
+        distances.sort(Double::compare);
+        return distances.size();
+    }
+
+    private int geoNear(double latitude, double longitude) {
+        NearQuery nearQuery = NearQuery.near(new GeoJsonPoint(longitude, latitude))
+                .maxDistance(new Distance(RADIUS_KM, Metrics.KILOMETERS))
+                .spherical(true);
+        return mongoTemplate.geoNear(nearQuery, MessOwner.class, COLLECTION).getContent().size();
+    }
+
+    private static MessOwner mess(int i, Random random) {
+        double[] point = point(random);
+        MessOwner mess = new MessOwner();
+        mess.setEmail("bench-" + i + "@test.local");
+        mess.setMessName("Bench Mess " + i);
+        mess.setMessAddress("Street " + i);
+        mess.setCapacity(50);
+        mess.setPricePerMeal(80);
+        mess.setLatitude(point[0]);
+        mess.setLongitude(point[1]);
+        mess.setLocation(new GeoJsonPoint(point[1], point[0]));
+        return mess;
+    }
+
+    private static double[] point(Random random) {
+        return new double[]{
+                CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD,
+                CENTER_LNG + (random.nextDouble() - 0.5) * SPREAD};
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        // Same earth radius as Metrics.KILOMETERS, so both count the same messes
+        return 6378.137 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static double percentile(long[] nanos, int percentile) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+}
@@ -0,0 +1,179 @@
+package com.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/*
+	OTP store under many concurrent generate / verify calls, no Spring context or mail needed
+ */
+class OTPServiceStressTest {
+
+	private static final int THREADS = 32;
+	private static final int CONTACTS = 20_000;
+
+	private OTPService newService(int maxPending) {
+		OTPService otpService = new OTPService();
+		ReflectionTestUtils.setField(otpService, "maxPending", maxPending);
+		return otpService;
+	}
+
+	@Test
+	void everyOtpVerifiesExactlyOnce() throws Exception {
+		OTPService otpService = newService(CONTACTS);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		AtomicInteger verified = new AtomicInteger();
+		AtomicInteger replayed = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < CONTACTS; i++) {
+			String contact = "stress-" + i + "@test.local";
+			futures.add(executor.submit(() -> {
+				start.await();
+				String otp = otpService.generateOtp(contact);
+				if (otpService.verifyOtp(contact, otp)) {
+					verified.incrementAndGet();
+				}
+				if (otpService.verifyOtp(contact, otp)) {
+					replayed.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(CONTACTS, verified.get());
+		assertEquals(0, replayed.get());
+		assertEquals(0, otpService.pendingCount());
+	}
+
+	@Test
+	void concurrentVerifiesOfOneOtpSucceedOnce() throws Exception {
+		OTPService otpService = newService(100);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		for (int round = 0; round < 200; round++) {
+			String contact = "race-" + round + "@test.local";
+			String otp = otpService.generateOtp(contact);
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicInteger verified = new AtomicInteger();
+
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					if (otpService.verifyOtp(contact, otp)) {
+						verified.incrementAndGet();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(10, TimeUnit.SECONDS);
+			}
+			assertEquals(1, verified.get());
+		}
+		executor.shutdown();
+		assertEquals(0, otpService.pendingCount());
+	}
+
+	@Test
+	void capacityIsNeverExceeded() throws Exception {
+		int capacity = 500;
+		OTPService otpService = newService(capacity);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		AtomicInteger accepted = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < capacity * 4; i++) {
+			String contact = "full-" + i + "@test.local";
+			futures.add(executor.submit(() -> {
+				start.await();
+				try {
+					otpService.generateOtp(contact);
+					accepted.incrementAndGet();
+				} catch (IllegalStateException e) {
+					rejected.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		assertEquals(capacity, accepted.get());
+		assertEquals(capacity * 3, rejected.get());
+		assertEquals(capacity, otpService.pendingCount());
+
+		// A contact that already has an OTP can always get a new one
+		otpService.generateOtp("full-0@test.local");
+		assertEquals(capacity, otpService.pendingCount());
+	}
+
+	@Test
+	void otpIsDroppedAfterTooManyWrongGuesses() {
+		OTPService otpService = newService(10);
+		String otp = otpService.generateOtp("guess@test.local");
+		String wrong = otp.equals("1000") ? "1001" : "1000";
+
+		for (int i = 0; i < 5; i++) {
+			assertFalse(otpService.verifyOtp("guess@test.local", wrong));
+		}
+		assertFalse(otpService.verifyOtp("guess@test.local", otp));
+		assertEquals(0, otpService.pendingCount());
+	}
+
+	@Test
+	void sweepKeepsTheCountRightWhileOtpsAreGenerated() throws Exception {
+		OTPService otpService = newService(CONTACTS);
+		// Every OTP is expired as soon as it is stored
+		ReflectionTestUtils.setField(otpService, "expirationMinutes", 0L);
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int thread = t;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < 500; i++) {
+					if (thread % 4 == 0) {
+						otpService.removeExpired();
+					} else {
+						// Few contacts, so generate often replaces an entry the sweep is looking at
+						otpService.generateOtp("sweep-" + (i % 50) + "@test.local");
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		executor.shutdown();
+
+		otpService.removeExpired();
+		assertEquals(0, otpService.pendingCount());
+		assertFalse(otpService.verifyOtp("sweep-0@test.local", "1000"));
+	}
+}